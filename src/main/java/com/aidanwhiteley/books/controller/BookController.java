@@ -1,22 +1,28 @@
 package com.aidanwhiteley.books.controller;
 
-import com.aidanwhiteley.books.controller.aspect.LimitDataVisibility;
 import com.aidanwhiteley.books.controller.exceptions.NotFoundException;
 import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.repository.BookRepository;
+import com.aidanwhiteley.books.repository.dtos.BookCursorQuery;
 import com.aidanwhiteley.books.repository.dtos.BooksByAuthor;
 import com.aidanwhiteley.books.repository.dtos.BooksByGenre;
+import com.aidanwhiteley.books.repository.dtos.CursorPage;
 import com.aidanwhiteley.books.service.StatsService;
 import com.aidanwhiteley.books.service.dtos.SummaryStats;
+import com.aidanwhiteley.books.util.JwtAuthenticationUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.security.Principal;
 import java.util.List;
 
-@LimitDataVisibility
+/**
+ * The public JSON API. The data returned in each Book depends on who the caller is - see BookFieldVisibility.
+ */
 @RestController
 @RequestMapping("/api")
 public class BookController {
@@ -27,15 +33,22 @@ public class BookController {
 
     private final StatsService statsService;
 
+    private final ConditionalBookRequests conditionalBookRequests;
+
+    private final JwtAuthenticationUtils authUtils;
+
     @Value("${books.users.default.page.size}")
     private int defaultPageSize;
 
     @Value("${books.users.max.page.size}")
     private int maxPageSize;
 
-    public BookController(BookRepository bookRepository, StatsService statsService) {
+    public BookController(BookRepository bookRepository, StatsService statsService,
+                          ConditionalBookRequests conditionalBookRequests, JwtAuthenticationUtils authUtils) {
         this.bookRepository = bookRepository;
         this.statsService = statsService;
+        this.conditionalBookRequests = conditionalBookRequests;
+        this.authUtils = authUtils;
     }
 
     @GetMapping(value = "/books")
@@ -48,12 +61,72 @@ public class BookController {
                                                    @RequestParam int size, Principal principal) {
 
         PageRequest pageObj = PageRequest.of(page, size);
-        return bookRepository.findAllByOrderByCreatedDateTimeDesc(pageObj);
+        return bookRepository.findVisibleBooksByOrderByCreatedDateTimeDesc(pageObj, caller(principal));
+    }
+
+    /**
+     * Pages through books, most recently created first, by cursor rather than page number. Pass an empty
+     * cursor for the first page and then the nextCursor from each response. Optionally filtered by one of
+     * author, genre or rating. Set includeTotal to false to skip counting the matching books.
+     */
+    @GetMapping(value = {"/books", "/books/"}, params = {"cursor", "size"})
+    public CursorPage<Book> findByCursor(@RequestParam String cursor, @RequestParam int size,
+                                         @RequestParam(required = false) String author,
+                                         @RequestParam(required = false) String genre,
+                                         @RequestParam(required = false) String rating,
+                                         @RequestParam(defaultValue = "true") boolean includeTotal,
+                                         Principal principal) {
+
+        if (size > maxPageSize) {
+            throw new IllegalArgumentException(PAGE_REQUEST_TOO_BIG_MESSAGE.formatted(maxPageSize));
+        }
+
+        Book.Rating aRating = null;
+        if (rating != null) {
+            aRating = Book.Rating.getRatingByString(rating);
+            if (null == aRating) {
+                throw new IllegalArgumentException("Supplied rating parameter not recognised");
+            }
+        }
+
+        BookCursorQuery cursorQuery = BookCursorQuery.builder()
+                .cursor(cursor)
+                .size(size)
+                .includeTotal(includeTotal)
+                .author(author)
+                .genre(genre)
+                .rating(aRating)
+                .build();
+        return bookRepository.findVisibleBooksByCursor(cursorQuery, caller(principal));
     }
 
+    /**
+     * Supports conditional GETs - returns a 304 with no body if the client's copy of the book is still current.
+     */
     @GetMapping(value = "/books/{id}")
-    public Book findBookById(@PathVariable String id, Principal principal) {
-        return bookRepository.findById(id).orElseThrow(() -> new NotFoundException("Book id " + id + " not found"));
+    public Book findBookById(@PathVariable String id, Principal principal, ServletWebRequest webRequest) {
+        if (conditionalBookRequests.checkNotModified(id, ConditionalBookRequests.JSON_REPRESENTATION, principal,
+                webRequest)) {
+            return null;
+        }
+        return bookRepository.findVisibleBookById(id, caller(principal)).orElseThrow(() -> new NotFoundException("Book id " + id + " not found"));
+    }
+
+    /**
+     * Pages through a book's comments - most recent first. The book returned by findBookById already holds
+     * the first page of comments.
+     */
+    @GetMapping(value = "/books/{id}/comments", params = {"page", "size"})
+    public Book findCommentsForBook(@PathVariable String id, @RequestParam int page, @RequestParam int size,
+                                    Principal principal) {
+
+        if (size > maxPageSize) {
+            throw new IllegalArgumentException(PAGE_REQUEST_TOO_BIG_MESSAGE.formatted(maxPageSize));
+        }
+
+        PageRequest pageObj = PageRequest.of(page, size);
+        return bookRepository.findVisibleCommentsForBook(id, pageObj, caller(principal))
+                .orElseThrow(() -> new NotFoundException("Book id " + id + " not found"));
     }
 
     @GetMapping(value = {"/books", "/books/"}, params = {"author"})
@@ -74,7 +147,7 @@ public class BookController {
         }
 
         PageRequest pageObj = PageRequest.of(page, size);
-        return bookRepository.findAllByAuthorOrderByCreatedDateTimeDesc(pageObj, author);
+        return bookRepository.findVisibleBooksByAuthorOrderByCreatedDateTimeDesc(pageObj, author, caller(principal));
     }
 
     @GetMapping(value = {"/books", "/books/"}, params = {"search"})
@@ -95,7 +168,7 @@ public class BookController {
         }
 
         PageRequest pageObj = PageRequest.of(page, size);
-        return bookRepository.searchForBooks(search, pageObj);
+        return bookRepository.searchForVisibleBooks(search, pageObj, caller(principal));
     }
 
     @GetMapping(value = {"/books", "/books/"}, params = {"genre"})
@@ -116,7 +189,7 @@ public class BookController {
         }
 
         PageRequest pageObj = PageRequest.of(page, size);
-        return bookRepository.findAllByGenreOrderByCreatedDateTimeDesc(pageObj, genre);
+        return bookRepository.findVisibleBooksByGenreOrderByCreatedDateTimeDesc(pageObj, genre, caller(principal));
     }
 
     @GetMapping(value = "/books/stats")
@@ -157,7 +230,11 @@ public class BookController {
         }
 
         PageRequest pageObj = PageRequest.of(page, size);
-        return bookRepository.findByRatingOrderByCreatedDateTimeDesc(pageObj, aRating);
+        return bookRepository.findVisibleBooksByRatingOrderByCreatedDateTimeDesc(pageObj, aRating, caller(principal));
     }
 
+    private User caller(Principal principal) {
+        // Only the roles and ids from the JWT are needed to decide what the caller can see
+        return authUtils.extractUserFromPrincipal(principal, true).orElse(null);
+    }
 }
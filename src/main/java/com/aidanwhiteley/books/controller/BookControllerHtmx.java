@@ -5,9 +5,12 @@ import com.aidanwhiteley.books.controller.exceptions.NotFoundException;
 import com.aidanwhiteley.books.domain.Book;
 import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.repository.BookRepository;
+import com.aidanwhiteley.books.repository.dtos.BookCursorQuery;
 import com.aidanwhiteley.books.repository.dtos.BooksByAuthor;
 import com.aidanwhiteley.books.repository.dtos.BooksByGenre;
 import com.aidanwhiteley.books.repository.dtos.BooksByReader;
+import com.aidanwhiteley.books.repository.dtos.BookSummary;
+import com.aidanwhiteley.books.repository.dtos.CursorPage;
 import com.aidanwhiteley.books.service.StatsService;
 import com.aidanwhiteley.books.service.dtos.SummaryStats;
 import com.aidanwhiteley.books.util.JwtAuthenticationUtils;
@@ -22,12 +25,15 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.thymeleaf.context.LazyContextVariable;
 
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static com.aidanwhiteley.books.domain.Book.Rating.GREAT;
 
@@ -38,6 +44,8 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
     public static final String HX_TRIGGER_AFTER_SWAP = "HX-Trigger-After-Swap";
     public static final String PAGE_OF_BOOKS = "pageOfBooks";
     public static final String PAGINATION_LINK = "paginationLink";
+    public static final String PAGING_BY_CURSOR = "pagingByCursor";
+    public static final String BOOKS_TABLE_ROWS = "components/books-table :: cloudy-books-table-rows";
     public static final String FIND_REVIEWS_CLOUDY_FIND_BY_RESULTS = "find-reviews :: cloudy-find-by-results";
     public static final String RATINGS = "ratings";
     public static final String AUTHORS = "authors";
@@ -48,17 +56,22 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
     public static final String IS_OWNER = "isOwner";
     public static final String COMMENT_FORM = "commentForm";
     public static final String HX_REQUEST = "HX-Request";
+    private static final int RECENT_PAGE_SIZE = 7;
     private final BookRepository bookRepository;
     private final JwtAuthenticationUtils authUtils;
     private final StatsService statsService;
+    private final ConditionalBookRequests conditionalBookRequests;
     @Value("${books.users.default.page.size}")
     private int defaultPageSize;
+    @Value("${books.comments.pageSize}")
+    private int commentsPageSize;
 
     public BookControllerHtmx(BookRepository bookRepository, JwtAuthenticationUtils jwtAuthenticationUtils,
-                              StatsService statsService) {
+                              StatsService statsService, ConditionalBookRequests conditionalBookRequests) {
         this.bookRepository = bookRepository;
         this.authUtils = jwtAuthenticationUtils;
         this.statsService = statsService;
+        this.conditionalBookRequests = conditionalBookRequests;
     }
 
     protected static List<Book.Rating> getRatings(String prefix) {
@@ -69,13 +82,26 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
         return ratings.reversed();
     }
 
+    /**
+     * Wraps a model attribute so that it is only read if the rendered template uses it. So, for example, an
+     * HTMX request that renders just a page of results doesn't read the lists used by the rest of the page.
+     */
+    protected static <T> LazyContextVariable<T> lazily(Supplier<T> supplier) {
+        return new LazyContextVariable<>() {
+            @Override
+            protected T loadValue() {
+                return supplier.get();
+            }
+        };
+    }
+
     @GetMapping(value = "/")
     public String index(Model model, Principal principal, HttpServletResponse response,
                         @RequestHeader(value = HX_REQUEST, required = false) boolean hxRequest) {
         PageRequest pageObj = PageRequest.of(0, 30);
-        Page<Book> page = bookRepository.findByRatingOrderByCreatedDateTimeDesc(pageObj, GREAT);
+        Page<BookSummary> page = bookRepository.findSummariesByRatingOrderByCreatedDateTimeDesc(pageObj, GREAT);
 
-        List<Book> books = getBooksWithRequiredImages(page);
+        List<BookSummary> books = getBooksWithRequiredImages(page);
         model.addAttribute("books", books.stream().toList());
         model.addAttribute("rating", "great");
         addUserToModel(principal, model);
@@ -98,9 +124,9 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
         }
 
         PageRequest pageObj = PageRequest.of(0, 30);
-        Page<Book> page = bookRepository.findByRatingOrderByCreatedDateTimeDesc(pageObj, ipRating);
+        Page<BookSummary> page = bookRepository.findSummariesByRatingOrderByCreatedDateTimeDesc(pageObj, ipRating);
 
-        List<Book> books = getBooksWithRequiredImages(page);
+        List<BookSummary> books = getBooksWithRequiredImages(page);
         model.addAttribute("books", books.stream().toList());
         model.addAttribute("rating", rating);
         addUserToModel(principal, model);
@@ -120,8 +146,8 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
     @GetMapping(value = "/recent", params = {"pagenum"})
     public String recentlyReviewedByPage(@RequestParam int pagenum, Model model, Principal principal,
                                          @RequestHeader(value = HX_REQUEST, required = false) boolean hxRequest) {
-        PageRequest pageObj = PageRequest.of(pagenum - 1, 7);
-        Page<Book> page = bookRepository.findAllByOrderByCreatedDateTimeDesc(pageObj);
+        PageRequest pageObj = PageRequest.of(pagenum - 1, RECENT_PAGE_SIZE);
+        Page<BookSummary> page = bookRepository.findSummariesByOrderByCreatedDateTimeDesc(pageObj);
 
         model.addAttribute(PAGE_OF_BOOKS, page);
         addUserToModel(principal, model);
@@ -134,9 +160,39 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
         }
     }
 
+    /**
+     * "Infinite scroll" version of the recently reviewed books. An empty cursor returns the first page and
+     * each page contains a row that, when revealed, fetches the rows of the next page. No count of the
+     * total number of books is needed.
+     */
+    @GetMapping(value = "/recent", params = {"cursor"})
+    public String recentlyReviewedByCursor(@RequestParam String cursor, Model model, Principal principal,
+                                           @RequestHeader(value = HX_REQUEST, required = false) boolean hxRequest) {
+        BookCursorQuery cursorQuery = BookCursorQuery.builder().cursor(cursor).size(RECENT_PAGE_SIZE).build();
+        addCursorPageToModel(bookRepository.findSummariesByCursor(cursorQuery), "/recent", model);
+
+        if (hxRequest && !cursor.isEmpty()) {
+            return BOOKS_TABLE_ROWS;
+        }
+
+        addUserToModel(principal, model);
+        if (hxRequest) {
+            return FIND_REVIEWS_CLOUDY_FIND_BY_RESULTS;
+        } else {
+            return "recently-reviewed";
+        }
+    }
+
     @GetMapping(value = "/bookreview", params = {"bookId"})
-    public String bookReview(@RequestParam String bookId, Model model, Principal principal) {
-        Book aBook = bookRepository.findById(bookId).orElseThrow(() -> new NotFoundException("Book id " + bookId + " not found"));
+    public String bookReview(@RequestParam String bookId, Model model, Principal principal,
+                             ServletWebRequest webRequest) {
+        if (conditionalBookRequests.checkNotModified(bookId, ConditionalBookRequests.HTML_REPRESENTATION,
+                principal, webRequest)) {
+            // A 304 has been sent so there is nothing to render
+            return null;
+        }
+
+        Book aBook = bookRepository.findBookWithCommentsById(bookId).orElseThrow(() -> new NotFoundException("Book id " + bookId + " not found"));
 
         model.addAttribute("book", aBook);
         model.addAttribute(COMMENT_FORM, new CommentForm());
@@ -146,6 +202,27 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
         return "book-review";
     }
 
+    /**
+     * Older comments for the review page - the review page itself only holds the most recent page of comments.
+     */
+    @GetMapping(value = "/bookreview/comments", params = {"bookId", "pagenum"})
+    public String bookReviewComments(@RequestParam String bookId, @RequestParam int pagenum, Model model,
+                                     Principal principal) {
+
+        if (pagenum < 1) {
+            throw new IllegalArgumentException("Cannot request a page less than 1");
+        }
+
+        Book comments = bookRepository.findCommentsForBook(bookId, PageRequest.of(pagenum - 1, commentsPageSize))
+                .orElseThrow(() -> new NotFoundException("Book id " + bookId + " not found"));
+
+        model.addAttribute("book", comments);
+        model.addAttribute("commentsPageNum", pagenum);
+        addUserToModel(principal, model);
+
+        return "book-review :: cloudy-book-comments-page";
+    }
+
     @GetMapping(value = "/find")
     public String findReviews(Model model, Principal principal) {
         List<Book.Rating> ratings = getRatings("");
@@ -177,7 +254,7 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
         }
 
         PageRequest pageObj = PageRequest.of(pagenum - 1, defaultPageSize);
-        Page<Book> books = bookRepository.findByRatingOrderByCreatedDateTimeDesc(pageObj, aRating);
+        Page<BookSummary> books = bookRepository.findSummariesByRatingOrderByCreatedDateTimeDesc(pageObj, aRating);
 
         model.addAttribute(PAGE_OF_BOOKS, books);
         model.addAttribute(RATINGS, getRatings(""));
@@ -209,7 +286,7 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
         }
 
         PageRequest pageObj = PageRequest.of(pagenum - 1, defaultPageSize);
-        Page<Book> books = bookRepository.findAllByAuthorOrderByCreatedDateTimeDesc(pageObj, author);
+        Page<BookSummary> books = bookRepository.findSummariesByAuthorOrderByCreatedDateTimeDesc(pageObj, author);
         model.addAttribute(PAGE_OF_BOOKS, books);
         model.addAttribute(RATINGS, getRatings(""));
         model.addAttribute(AUTHORS, getAuthors());
@@ -238,7 +315,7 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
         }
 
         PageRequest pageObj = PageRequest.of(pagenum - 1, defaultPageSize);
-        Page<Book> books = bookRepository.findAllByGenreOrderByCreatedDateTimeDesc(pageObj, genre);
+        Page<BookSummary> books = bookRepository.findSummariesByGenreOrderByCreatedDateTimeDesc(pageObj, genre);
 
         model.addAttribute(PAGE_OF_BOOKS, books);
         model.addAttribute(RATINGS, getRatings(""));
@@ -256,6 +333,53 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
         }
     }
 
+    /**
+     * "Infinite scroll" version of finding books by one of rating, author or genre - see recentlyReviewedByCursor.
+     */
+    @GetMapping(value = {"/find"}, params = {"cursor"})
+    public String findByCursor(Model model, Principal principal, @RequestParam String cursor,
+                               @RequestParam(required = false) String rating,
+                               @RequestParam(required = false) String author,
+                               @RequestParam(required = false) String genre,
+                               @RequestHeader(value = HX_REQUEST, required = false) boolean hxRequest) {
+
+        BookCursorQuery.BookCursorQueryBuilder cursorQuery = BookCursorQuery.builder().cursor(cursor).size(defaultPageSize);
+        String paginationLink;
+        if (rating != null && !rating.trim().isEmpty()) {
+            Book.Rating aRating = Book.Rating.getRatingByString(rating);
+            if (null == aRating) {
+                throw new IllegalArgumentException("Supplied rating parameter not recognised");
+            }
+            cursorQuery.rating(aRating);
+            paginationLink = "find?rating=" + rating;
+        } else if (author != null && !author.trim().isEmpty()) {
+            cursorQuery.author(author);
+            paginationLink = "find?author=" + author;
+        } else if (genre != null && !genre.trim().isEmpty()) {
+            cursorQuery.genre(genre);
+            paginationLink = "find?genre=" + genre;
+        } else {
+            throw new IllegalArgumentException("One of the rating, author or genre parameters must be supplied");
+        }
+
+        addCursorPageToModel(bookRepository.findSummariesByCursor(cursorQuery.build()), paginationLink, model);
+
+        if (hxRequest && !cursor.isEmpty()) {
+            return BOOKS_TABLE_ROWS;
+        }
+
+        addUserToModel(principal, model);
+        if (hxRequest) {
+            return FIND_REVIEWS_CLOUDY_FIND_BY_RESULTS;
+        } else {
+            model.addAttribute(RATINGS, getRatings(""));
+            model.addAttribute(AUTHORS, getAuthors());
+            model.addAttribute(GENRES, getGenres());
+            model.addAttribute(REVIEWERS, getReviewers(principal));
+            return FIND_REVIEWS;
+        }
+    }
+
     @GetMapping(value = {"/search"}, params = {"term"})
     public String findBySearchFullPage(Model model, Principal principal, @RequestParam String term) {
         return findBySearch(model, principal, term, 1, false);
@@ -274,7 +398,7 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
         }
 
         PageRequest pageObj = PageRequest.of(pagenum - 1, defaultPageSize);
-        Page<Book> books = bookRepository.searchForBooks(term, pageObj);
+        Page<BookSummary> books = bookRepository.searchForBookSummaries(term, pageObj);
 
         model.addAttribute(PAGE_OF_BOOKS, books);
         addUserToModel(principal, model);
@@ -353,31 +477,33 @@ public class BookControllerHtmx implements BookControllerHtmxExceptionHandling {
     }
 
 
-    private List<BooksByAuthor> getAuthors() {
-        return bookRepository.countBooksByAuthor();
+    private void addCursorPageToModel(CursorPage<BookSummary> page, String paginationLink, Model model) {
+        model.addAttribute(PAGE_OF_BOOKS, page);
+        model.addAttribute(PAGING_BY_CURSOR, true);
+        model.addAttribute(PAGINATION_LINK, paginationLink);
     }
 
-    private List<BooksByGenre> getGenres() {
-        return bookRepository.countBooksByGenre();
+    private LazyContextVariable<List<BooksByAuthor>> getAuthors() {
+        return lazily(bookRepository::countBooksByAuthor);
     }
 
-    private List<Book> getBooksWithRequiredImages(Page<Book> page) {
-        return page.getContent().stream().filter(b ->
-                (b.getGoogleBookId() != null &&
-                        !b.getGoogleBookId().isBlank() &&
-                        (b.getGoogleBookDetails().getVolumeInfo().getImageLinks() != null) &&
-                        (b.getGoogleBookDetails().getVolumeInfo().getImageLinks().getThumbnail() != null) &&
-                        !b.getGoogleBookDetails().getVolumeInfo().getImageLinks().getThumbnail().isBlank()
-                )).toList();
+    private LazyContextVariable<List<BooksByGenre>> getGenres() {
+        return lazily(bookRepository::countBooksByGenre);
     }
 
-    private List<BooksByReader> getReviewers(Principal principal) {
-        Optional<User> user = authUtils.extractUserFromPrincipal(principal, false);
-        if (user.isPresent() && user.get().getHighestRole().getRoleNumber() >= User.Role.ROLE_EDITOR.getRoleNumber()) {
-            return bookRepository.countBooksByReader();
-        } else {
-            return new ArrayList<>();
-        }
+    private List<BookSummary> getBooksWithRequiredImages(Page<BookSummary> page) {
+        return page.getContent().stream().filter(BookSummary::hasThumbnailImage).toList();
+    }
+
+    private LazyContextVariable<List<BooksByReader>> getReviewers(Principal principal) {
+        return lazily(() -> {
+            Optional<User> user = authUtils.extractUserFromPrincipal(principal, false);
+            if (user.isPresent() && user.get().getHighestRole().getRoleNumber() >= User.Role.ROLE_EDITOR.getRoleNumber()) {
+                return bookRepository.countBooksByReader();
+            } else {
+                return new ArrayList<>();
+            }
+        });
     }
 
 
@@ -1,6 +1,5 @@
 package com.aidanwhiteley.books.controller;
 
-import com.aidanwhiteley.books.controller.aspect.LimitDataVisibility;
 import com.aidanwhiteley.books.controller.dtos.CommentRec;
 import com.aidanwhiteley.books.controller.exceptions.NotAuthorisedException;
 import com.aidanwhiteley.books.domain.Book;
@@ -8,11 +7,12 @@ import com.aidanwhiteley.books.domain.Comment;
 import com.aidanwhiteley.books.domain.Owner;
 import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.domain.googlebooks.BookSearchResult;
-import com.aidanwhiteley.books.domain.googlebooks.Item;
 import com.aidanwhiteley.books.repository.BookRepository;
-import com.aidanwhiteley.books.repository.GoogleBooksDaoAsync;
 import com.aidanwhiteley.books.repository.GoogleBooksDaoSync;
 import com.aidanwhiteley.books.repository.dtos.BooksByReader;
+import com.aidanwhiteley.books.repository.dtos.GoogleBookEnrichmentJob;
+import com.aidanwhiteley.books.repository.dtos.UpdatedBook;
+import com.aidanwhiteley.books.service.GoogleBookEnrichmentService;
 import com.aidanwhiteley.books.util.JwtAuthenticationUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -39,7 +39,6 @@ import java.util.Optional;
 
 import static com.aidanwhiteley.books.util.LogDetaint.logMessageDetaint;
 
-@LimitDataVisibility
 @RestController
 @RequestMapping("/secure/api")
 @PreAuthorize("hasAnyRole('ROLE_EDITOR', 'ROLE_ADMIN')")
@@ -51,7 +50,7 @@ public class BookSecureController {
 
     private final GoogleBooksDaoSync googleBooksDaoSync;
 
-    private final GoogleBooksDaoAsync googleBooksDaoAsync;
+    private final GoogleBookEnrichmentService googleBookEnrichmentService;
 
     private final JwtAuthenticationUtils authUtils;
 
@@ -59,27 +58,14 @@ public class BookSecureController {
     private int maxPageSize;
 
     public BookSecureController(BookRepository bookRepository, GoogleBooksDaoSync googleBooksDaoSync,
-                                GoogleBooksDaoAsync googleBooksDaoAsync, JwtAuthenticationUtils jwtAuthenticationUtils) {
+                                GoogleBookEnrichmentService googleBookEnrichmentService,
+                                JwtAuthenticationUtils jwtAuthenticationUtils) {
         this.bookRepository = bookRepository;
         this.googleBooksDaoSync = googleBooksDaoSync;
-        this.googleBooksDaoAsync = googleBooksDaoAsync;
+        this.googleBookEnrichmentService = googleBookEnrichmentService;
         this.authUtils = jwtAuthenticationUtils;
     }
 
-    protected static Book mergeUpdatesOntoExistingBook(Book currentBookState, Book book) {
-
-        // Set the fields the owner / admin is allowed to manually update
-        currentBookState.setSummary(book.getSummary());
-        currentBookState.setGenre(book.getGenre());
-        currentBookState.setTitle(book.getTitle());
-        currentBookState.setSummary(book.getSummary());
-        currentBookState.setGoogleBookId(book.getGoogleBookId());
-        currentBookState.setRating(book.getRating());
-        currentBookState.setAuthor(book.getAuthor());
-
-        return currentBookState;
-    }
-
     @PostMapping(value = "/books")
     public ResponseEntity<Book> createBook(@Valid @RequestBody Book book, Principal principal) throws MalformedURLException, URISyntaxException {
 
@@ -90,10 +76,10 @@ public class BookSecureController {
 
             Book insertedBook = bookRepository.insert(book);
 
-            // If there were Google Book details specified, call an async method to
-            // go and get the full details from Google and then update the Mongo document for the book
+            // If there were Google Book details specified, queue a job to go and get the full
+            // details from Google in the background and then update the Mongo document for the book
             if (book.getGoogleBookId() != null && !book.getGoogleBookId().isEmpty()) {
-                googleBooksDaoAsync.updateBookWithGoogleBookDetails(insertedBook, book.getGoogleBookId());
+                googleBookEnrichmentService.requestGoogleBookDetails(insertedBook.getId(), book.getGoogleBookId());
             }
 
             URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}")
@@ -116,31 +102,26 @@ public class BookSecureController {
 
         Optional<User> user = authUtils.extractUserFromPrincipal(principal, false);
         if (user.isPresent()) {
-            Book currentBookState = bookRepository.findById(book.getId())
-                    .orElseThrow(() -> new IllegalArgumentException("Didn't find book to update"));
+            // A targeted update that only matches if the user owns the book or is an admin - so there's
+            // no need to read the book first
+            Optional<UpdatedBook> updatedBook = bookRepository.updateReviewFields(book, user.get(), null);
 
-            if (currentBookState.isOwner(user.get()) || user.get().getRoles().contains(User.Role.ROLE_ADMIN)) {
+            if (updatedBook.isPresent()) {
 
+                String previousGoogleBookId = updatedBook.get().googleBookIdBeforeUpdate();
                 boolean inputHasGoogleBookId = book.getGoogleBookId() != null && (!book.getGoogleBookId().isEmpty());
-                boolean currentBookHasGoogleBookId = currentBookState.getGoogleBookId() != null &&
-                        (!currentBookState.getGoogleBookId().isEmpty());
-
-                if (inputHasGoogleBookId && (currentBookHasGoogleBookId &&
-                        !currentBookState.getGoogleBookId().equalsIgnoreCase(book.getGoogleBookId()))
-                ) {
-                    // Retrieve and update Google Book details synchronously
-                    Item item = googleBooksDaoSync.searchGoogleBooksByGoogleBookId(book.getGoogleBookId());
-                    currentBookState.setGoogleBookDetails(item);
-                } else if (book.getGoogleBookId() == null || book.getGoogleBookId().isEmpty()) {
-                    currentBookState.setGoogleBookDetails(null);
-                }
 
-                Book mergedBook = mergeUpdatesOntoExistingBook(currentBookState, book);
+                // If the Google book id has changed, queue a job to go and get the full details from Google
+                // in the background and then update the Mongo document for the book
+                if (inputHasGoogleBookId && !book.getGoogleBookId().equalsIgnoreCase(previousGoogleBookId)) {
+                    googleBookEnrichmentService.requestGoogleBookDetails(book.getId(), book.getGoogleBookId());
+                }
 
-                bookRepository.save(mergedBook);
                 return ResponseEntity.noContent().build();
-            } else {
+            } else if (bookRepository.existsById(book.getId())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            } else {
+                throw new IllegalArgumentException("Didn't find book to update");
             }
         } else {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
@@ -156,7 +137,7 @@ public class BookSecureController {
                     .orElseThrow(() -> new IllegalArgumentException("Couldn't find book to delete"));
 
             if (currentBookState.isOwner(user.get()) || user.get().getRoles().contains(User.Role.ROLE_ADMIN)) {
-                bookRepository.deleteById(id);
+                bookRepository.deleteBookAndComments(id);
                 return ResponseEntity.noContent().build();
             } else {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
@@ -173,7 +154,9 @@ public class BookSecureController {
         Optional<User> user = authUtils.extractUserFromPrincipal(principal, false);
         if (user.isPresent()) {
             Comment comment = new Comment(commentRec.commentText(), new Owner(user.get()));
-            return bookRepository.addCommentToBook(id, comment);
+            Book comments = bookRepository.addCommentToBook(id, comment);
+            comments.setPermissionsAndContentForUser(user.get());
+            return comments;
         } else {
             return null;
         }
@@ -186,16 +169,13 @@ public class BookSecureController {
         Optional<User> user = authUtils.extractUserFromPrincipal(principal, false);
 
         if (user.isPresent()) {
-            Book currentBook = bookRepository.findById(id)
-                    .orElseThrow(() -> new IllegalArgumentException("Unable to find book to delete comment from"));
-            Comment comment = currentBook.getComments().stream().filter(c -> c.getId().equals(commentId)).findFirst()
-                    .orElse(null);
-            if (comment == null) {
-                throw new IllegalArgumentException("Unknown commentId supplied");
-            }
+            Comment comment = bookRepository.findCommentForBook(id, commentId)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown commentId supplied"));
 
             if (comment.isOwner(user.get()) || user.get().getRoles().contains(User.Role.ROLE_ADMIN)) {
-                return bookRepository.removeCommentFromBook(id, commentId, user.get().getFullName());
+                Book comments = bookRepository.removeCommentFromBook(id, commentId, user.get().getFullName());
+                comments.setPermissionsAndContentForUser(user.get());
+                return comments;
             } else {
                 throw new NotAuthorisedException("Not owner of comment or admin");
             }
@@ -222,7 +202,8 @@ public class BookSecureController {
         }
 
         PageRequest pageObj = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdDateTime"));
-        return bookRepository.findByReaderOrderByCreatedDateTimeDesc(pageObj, reader);
+        return bookRepository.findVisibleBooksByReaderOrderByCreatedDateTimeDesc(pageObj, reader,
+                authUtils.extractUserFromPrincipal(principal, true).orElse(null));
     }
 
     @GetMapping(value = {"/googlebooks", "googlebooks/"}, params = {"title", "author"})
@@ -230,6 +211,22 @@ public class BookSecureController {
         return googleBooksDaoSync.searchGoogleBooksByTitleAndAuthor(title, author);
     }
 
+    @GetMapping(value = "/googlebooks/enrichment/dead")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public List<GoogleBookEnrichmentJob> findDeadGoogleBookEnrichmentJobs() {
+        return googleBookEnrichmentService.getDeadJobs();
+    }
+
+    @PostMapping(value = "/googlebooks/enrichment/dead/{googleBookId}/retry")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Void> retryDeadGoogleBookEnrichmentJob(@PathVariable String googleBookId) {
+        if (googleBookEnrichmentService.retryDeadJob(googleBookId)) {
+            return ResponseEntity.accepted().build();
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping(value = "/books/readers")
     public List<BooksByReader> findBookReaders() {
         return bookRepository.countBooksByReader();
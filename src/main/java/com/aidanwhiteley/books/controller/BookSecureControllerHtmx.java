@@ -14,6 +14,8 @@ import com.aidanwhiteley.books.repository.UserRepository;
 import com.aidanwhiteley.books.repository.dtos.BooksByAuthor;
 import com.aidanwhiteley.books.repository.dtos.BooksByGenre;
 import com.aidanwhiteley.books.repository.dtos.BooksByReader;
+import com.aidanwhiteley.books.repository.dtos.BookSummary;
+import com.aidanwhiteley.books.repository.dtos.UpdatedBook;
 import com.aidanwhiteley.books.service.GoogleBookSearchService;
 import com.aidanwhiteley.books.service.dtos.GoogleBookSearchResult;
 import com.aidanwhiteley.books.util.JwtAuthenticationUtils;
@@ -32,6 +34,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.thymeleaf.context.LazyContextVariable;
 
 import java.security.Principal;
 import java.util.ArrayList;
@@ -157,8 +160,8 @@ public class BookSecureControllerHtmx implements BookControllerHtmxExceptionHand
 
             Book aBook = bookRepository.insert(bookForm.getBookFromBookForm());
 
-            // If there were Google Book details specified, go and get the full details from Google (or the local cache)
-            // and then update the Mongo document for the book
+            // If there were Google Book details specified, add the full details from the local cache to the Mongo
+            // document for the book. If they're not cached, they are retrieved from Google in the background.
             if (bookForm.getGoogleBookId() != null && !bookForm.getGoogleBookId().isEmpty()) {
                 googleBookSearchService.updateBookWithGoogleBookDetails(aBook, bookForm.getTitle(), bookForm.getAuthor(), bookForm.getIndex());
             }
@@ -214,20 +217,25 @@ public class BookSecureControllerHtmx implements BookControllerHtmxExceptionHand
 
             Book aBook;
 
-            Book currentBookState = bookRepository.findById(bookForm.getBookId())
-                    .orElseThrow(() -> new IllegalArgumentException("Didn't find book with id '" + bookForm.getBookId() + "' to update"));
-            if (currentBookState.isOwner(user.get()) || user.get().getRoles().contains(User.Role.ROLE_ADMIN)) {
-                Book inputBook = bookForm.getBookFromBookForm();
-                Book mergedBook = BookSecureController.mergeUpdatesOntoExistingBook(currentBookState, inputBook);
-                aBook = bookRepository.save(mergedBook);
+            // Any Google Books data for a changed Google book id is added below - from the local search cache if
+            // it's there or in the background if not - so isn't loaded as part of the update
+            Optional<UpdatedBook> updatedBook = bookRepository.updateReviewFields(bookForm.getBookFromBookForm(),
+                    user.get(), null);
+            if (updatedBook.isPresent()) {
+                // The whole book - with its first page of comments - is needed to display the updated review
+                aBook = bookRepository.findBookWithCommentsById(bookForm.getBookId())
+                        .orElseThrow(() -> new IllegalArgumentException("Didn't find book with id '" +
+                                bookForm.getBookId() + "' after updating it"));
+            } else if (!bookRepository.existsById(bookForm.getBookId())) {
+                throw new IllegalArgumentException("Didn't find book with id '" + bookForm.getBookId() + "' to update");
             } else {
                 LOGGER.error("An attempt to update book id {} was made by {} without the necessary permissions",
                         bookForm.getBookId(), user.get().getFullName());
                 throw new NotAuthorisedException("User did not have the permission required to update a book review");
             }
 
-            // If there were Google Book details specified, go and get the full details from Google (or the local cache)
-            // and then update the Mongo document for the book
+            // If there were Google Book details specified, add the full details from the local cache to the Mongo
+            // document for the book. If they're not cached, they are retrieved from Google in the background.
             if (bookForm.getGoogleBookId() != null && !bookForm.getGoogleBookId().isEmpty()) {
                 googleBookSearchService.updateBookWithGoogleBookDetails(aBook, bookForm.getTitle(), bookForm.getAuthor(), bookForm.getIndex());
             }
@@ -282,7 +290,7 @@ public class BookSecureControllerHtmx implements BookControllerHtmxExceptionHand
                     .orElseThrow(() -> new IllegalArgumentException("Couldn't find book id " + id + " to delete"));
 
             if (currentBookState.isOwner(user.get()) || user.get().getRoles().contains(User.Role.ROLE_ADMIN)) {
-                bookRepository.deleteById(id);
+                bookRepository.deleteBookAndComments(id);
 
                 // This call is to populate the model variable - we don't use the return string
                 bookControllerHtmx.recentlyReviewed(model, principal);
@@ -314,7 +322,7 @@ public class BookSecureControllerHtmx implements BookControllerHtmxExceptionHand
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Following comment creation validation errors occurred: {}", bindingResult);
             }
-            Book theBook = bookRepository.findById(commentForm.getBookId())
+            Book theBook = bookRepository.findBookWithCommentsById(commentForm.getBookId())
                     .orElseThrow(() -> new IllegalArgumentException("Couldn't find book id " + commentForm.getBookId() +
                             " for new comment error message"));
 
@@ -355,11 +363,8 @@ public class BookSecureControllerHtmx implements BookControllerHtmxExceptionHand
         if (user.isPresent()) {
             Book currentBook = bookRepository.findById(bookId)
                     .orElseThrow(() -> new IllegalArgumentException("Unable to find book to delete comment from"));
-            Comment comment = currentBook.getComments().stream().filter(c -> c.getId().equals(commentId)).findFirst()
-                    .orElse(null);
-            if (comment == null) {
-                throw new IllegalArgumentException("Unknown commentId supplied to deleteCommentFromBook");
-            }
+            Comment comment = bookRepository.findCommentForBook(bookId, commentId)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown commentId supplied to deleteCommentFromBook"));
 
             if (comment.isOwner(user.get()) || user.get().getRoles().contains(User.Role.ROLE_ADMIN)) {
                 Book book = bookRepository.removeCommentFromBook(bookId, commentId, user.get().getFullName());
@@ -405,7 +410,7 @@ public class BookSecureControllerHtmx implements BookControllerHtmxExceptionHand
         }
 
         PageRequest pageObj = PageRequest.of(pagenum - 1, defaultPageSize);
-        Page<Book> books = bookRepository.findByReaderOrderByCreatedDateTimeDesc(pageObj, reviewer);
+        Page<BookSummary> books = bookRepository.findSummariesByReaderOrderByCreatedDateTimeDesc(pageObj, reviewer);
         model.addAttribute("pageOfBooks", books);
         model.addAttribute("ratings", BookControllerHtmx.getRatings(""));
         model.addAttribute("authors", getAuthors());
@@ -516,22 +521,24 @@ public class BookSecureControllerHtmx implements BookControllerHtmxExceptionHand
         }
     }
 
-    private List<BooksByReader> getReviewers(Principal principal) {
-        Optional<User> user = authUtils.extractUserFromPrincipal(principal, false);
-        if (user.isPresent() && user.get().getHighestRole().getRoleNumber() >= User.Role.ROLE_EDITOR.getRoleNumber()) {
-            return bookRepository.countBooksByReader();
-        } else {
-            LOGGER.warn("A Principal (user) should be present for this method to have been called");
-            return new ArrayList<>();
-        }
+    private LazyContextVariable<List<BooksByReader>> getReviewers(Principal principal) {
+        return BookControllerHtmx.lazily(() -> {
+            Optional<User> user = authUtils.extractUserFromPrincipal(principal, false);
+            if (user.isPresent() && user.get().getHighestRole().getRoleNumber() >= User.Role.ROLE_EDITOR.getRoleNumber()) {
+                return bookRepository.countBooksByReader();
+            } else {
+                LOGGER.warn("A Principal (user) should be present for this method to have been called");
+                return new ArrayList<>();
+            }
+        });
     }
 
-    private List<BooksByGenre> getGenres() {
-        return bookRepository.countBooksByGenre();
+    private LazyContextVariable<List<BooksByGenre>> getGenres() {
+        return BookControllerHtmx.lazily(bookRepository::countBooksByGenre);
     }
 
-    private List<BooksByAuthor> getAuthors() {
-        return bookRepository.countBooksByAuthor();
+    private LazyContextVariable<List<BooksByAuthor>> getAuthors() {
+        return BookControllerHtmx.lazily(bookRepository::countBooksByAuthor);
     }
 
 }
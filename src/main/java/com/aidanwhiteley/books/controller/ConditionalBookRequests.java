@@ -0,0 +1,94 @@
+package com.aidanwhiteley.books.controller;
+
+import com.aidanwhiteley.books.repository.BookRepository;
+import com.aidanwhiteley.books.repository.dtos.BookVersion;
+import com.aidanwhiteley.books.util.JwtAuthenticationUtils;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+
+/**
+ * Answers conditional GETs (If-None-Match / If-Modified-Since) for a single book from the cheap
+ * BookVersion projection query so that a client revalidating an unchanged book gets a 304 without
+ * the book being fully read from Mongo or re-rendered.
+ * <p>
+ * As well as the BookVersion, the ETag varies with:
+ * <ul>
+ *     <li>the representation (e.g. HTML or JSON)</li>
+ *     <li>the identity and highest role of the user from their JWT - both change what the user is shown</li>
+ *     <li>the time the application started - so that a deployment with changed templates or JSON
+ *     can't leave clients displaying a stale page</li>
+ * </ul>
+ */
+@Component
+public class ConditionalBookRequests {
+
+    public static final String HTML_REPRESENTATION = "html";
+    public static final String JSON_REPRESENTATION = "json";
+
+    private static final String ANONYMOUS_USER = "anonymous";
+    private static final String CACHE_CONTROL = CacheControl.noCache().cachePrivate().getHeaderValue();
+
+    private final BookRepository bookRepository;
+    private final JwtAuthenticationUtils authUtils;
+    private final String applicationStarted = Long.toString(System.currentTimeMillis());
+
+    public ConditionalBookRequests(BookRepository bookRepository, JwtAuthenticationUtils authUtils) {
+        this.bookRepository = bookRepository;
+        this.authUtils = authUtils;
+    }
+
+    /**
+     * Checks the request's conditional headers against the current version of the book and sets the
+     * ETag, Last-Modified and Cache-Control headers on the response.
+     *
+     * @return true if the response has been set to 304 Not Modified - in which case the caller should
+     * return null from the controller method. Always false if the book doesn't exist.
+     */
+    public boolean checkNotModified(String bookId, String representation, Principal principal,
+                                    ServletWebRequest webRequest) {
+
+        Optional<BookVersion> bookVersion = bookRepository.findBookVersion(bookId);
+        if (bookVersion.isEmpty()) {
+            return false;
+        }
+
+        // Without this, Spring Security's default of "no-store" would stop clients from ever revalidating
+        HttpServletResponse response = webRequest.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        }
+
+        return webRequest.checkNotModified(eTag(bookVersion.get(), representation, principal),
+                lastModified(bookVersion.get()));
+    }
+
+    private String eTag(BookVersion version, String representation, Principal principal) {
+        // Only the JWT data is used so that working out the ETag never queries the user collection
+        String user = authUtils.extractUserFromPrincipal(principal, true).
+                map(u -> u.getAuthProvider() + ":" + u.getAuthenticationServiceId() + ":" + u.getHighestRole()).
+                orElse(ANONYMOUS_USER);
+
+        String versionKey = String.join("|", applicationStarted, representation, user, version.getId(),
+                String.valueOf(version.getLastModifiedDateTime()), String.valueOf(version.getCommentCount()),
+                String.valueOf(version.getCommentsLastModifiedDateTime()),
+                String.valueOf(version.getGoogleBookDetailsSelfLink()));
+
+        return "\"" + DigestUtils.md5DigestAsHex(versionKey.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static long lastModified(BookVersion version) {
+        LocalDateTime lastChanged = version.getLastChangedDateTime();
+        // Spring ignores a negative Last-Modified value
+        return lastChanged == null ? -1 : lastChanged.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -5,19 +5,22 @@ import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.service.GoodReadsExportService;
 import com.aidanwhiteley.books.util.JwtAuthenticationUtils;
 import com.aidanwhiteley.books.util.SiteRssFeed;
-import com.rometools.rome.feed.rss.Channel;
-import com.rometools.rome.io.FeedException;
-import com.rometools.rome.io.WireFeedOutput;
+import com.aidanwhiteley.books.util.SiteRssFeed.RenderedSiteRssFeed;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.hc.core5.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -42,15 +45,17 @@ public class FeedsController {
     }
 
     @GetMapping(value = "/rss", produces = MediaType.APPLICATION_RSS_XML_VALUE)
-    public String findRecentActivity() {
-        Channel channel = siteRssFeed.createSiteRssFeed();
-        WireFeedOutput output = new WireFeedOutput();
-        try {
-            return output.outputString(channel);
-        } catch (FeedException fe) {
-            // Leave logging to global exception handler
-            throw new IllegalStateException("Failed to generate RSS feed", fe);
-        }
+    public ResponseEntity<byte[]> findRecentActivity() {
+        RenderedSiteRssFeed feed = siteRssFeed.getRenderedSiteRssFeed();
+
+        // Spring replies with a 304 Not Modified if the request's If-None-Match / If-Modified-Since
+        // headers match these values - so polling feed readers cost neither a Mongo query nor any XML rendering.
+        return ResponseEntity.ok().
+                contentType(new MediaType(MediaType.APPLICATION_RSS_XML, StandardCharsets.UTF_8)).
+                cacheControl(CacheControl.noCache()).
+                eTag(feed.eTag()).
+                lastModified(feed.lastModified()).
+                body(feed.xml());
     }
 
     @GetMapping("/exportbooks")
@@ -61,6 +66,7 @@ public class FeedsController {
         if (user.isPresent()) {
                 try {
                     response.setContentType("text/csv");
+                    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
                     DateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
                     String currentDateTime = dateFormatter.format(new Date());
 
@@ -68,16 +74,12 @@ public class FeedsController {
                     String headerValue = "attachment; filename=cloudy_book_club_export_" + currentDateTime + ".csv";
                     response.setHeader(headerKey, headerValue);
 
-                    var responseStream = response.getOutputStream();
+                    // Not using response.getWriter() as a PrintWriter would hide a client disconnecting part
+                    // way through the export - leaving the rest of the books to be needlessly read and written.
+                    var writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
                     // The logged on user can only export their own books reviews
-                    var csvRows = goodReadsExportService.getExportInGoodReadsFormat(user.get());
-                    for (int i = 0; i < csvRows.size(); i++) {
-                        if (i < csvRows.size() - 1) {
-                            responseStream.println(csvRows.get(i));
-                        } else {
-                            responseStream.print(csvRows.get(i));
-                        }
-                    }
+                    long booksExported = goodReadsExportService.writeExportInGoodReadsFormat(user.get(), writer);
+                    LOGGER.debug("Exported {} books in Goodreads format", booksExported);
                 } catch (IOException ioe) {
                     LOGGER.error("There was an unexpected error creating a Goodreads format export", ioe);
                     try {
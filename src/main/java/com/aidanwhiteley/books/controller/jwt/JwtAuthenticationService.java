@@ -1,6 +1,7 @@
 package com.aidanwhiteley.books.controller.jwt;
 
 import com.aidanwhiteley.books.domain.User;
+import com.aidanwhiteley.books.repository.UserRepository;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,6 +12,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.List;
+
+import static com.aidanwhiteley.books.util.LogDetaint.logMessageDetaint;
+
 @Service
 public class JwtAuthenticationService {
 
@@ -25,6 +31,8 @@ public class JwtAuthenticationService {
 
     private final JwtUtils jwtUtils;
 
+    private final UserRepository userRepository;
+
     // Setters for testing support outside of a Spring context
     @Setter
     @Value("${books.jwt.cookieOverHttpsOnly}")
@@ -42,13 +50,20 @@ public class JwtAuthenticationService {
     @Value("${books.jwt.cookieExpirySeconds}")
     private int cookieExpirySeconds;
 
-    public JwtAuthenticationService(JwtUtils jwtUtils) {
+    @Setter
+    @Value("${books.jwt.userRevalidationIntervalSeconds}")
+    private long userRevalidationIntervalSeconds;
+
+    public JwtAuthenticationService(JwtUtils jwtUtils, UserRepository userRepository) {
         this.jwtUtils = jwtUtils;
+        this.userRepository = userRepository;
     }
 
     public void setAuthenticationData(HttpServletResponse response, User user) {
+        writeJwtCookie(response, jwtUtils.createTokenForUser(user), user);
+    }
 
-        String token = jwtUtils.createTokenForUser(user);
+    private void writeJwtCookie(HttpServletResponse response, String token, User user) {
 
         // There is currently no functionality on the jakarta.servlet.http.Cookie class to set SameSite directly.
         var cookie = new StringBuilder();
@@ -86,15 +101,18 @@ public class JwtAuthenticationService {
                             try {
                                 User user = jwtUtils.getUserFromToken(token);
 
-                                // TODO - add support for interval based checking of whether the user is still in the database.
-                                //        Will require adding a "lastChecked" field to the JWT and calling the database appropriately.
+                                if (isUserRevalidationDue(token)) {
+                                    user = revalidateUser(user, token, response);
+                                }
 
-                                auth = new JwtAuthentication(user);
+                                if (user != null) {
+                                    auth = new JwtAuthentication(user);
 
-                                // If we got to here with no exceptions thrown
-                                // then we can assume we have a valid token
-                                auth.setAuthenticated(true);
-                                LOGGER.debug("JWT found and validated - setting authentication true");
+                                    // If we got to here with no exceptions thrown
+                                    // then we can assume we have a valid token
+                                    auth.setAuthenticated(true);
+                                    LOGGER.debug("JWT found and validated - setting authentication true");
+                                }
                             } catch (ExpiredJwtException eje) {
                                 expireJwtCookie(response);
                                 LOGGER.info("JWT expired so cookie deleted");
@@ -121,6 +139,35 @@ public class JwtAuthenticationService {
         return auth;
     }
 
+    private boolean isUserRevalidationDue(String token) {
+        return jwtUtils.getLastCheckedFromToken(token).plusSeconds(userRevalidationIntervalSeconds).isBefore(Instant.now());
+    }
+
+    /**
+     * Between checks the user details and roles in the JWT are trusted. Once books.jwt.userRevalidationIntervalSeconds
+     * has passed, the user is checked against the data store and the cookie is reissued with their current details
+     * and roles - so a deleted user or a change of roles takes effect without reading the user on every request.
+     *
+     * @return The user as currently stored or null if they no longer exist - in which case the cookie is deleted.
+     */
+    private User revalidateUser(User tokenUser, String token, HttpServletResponse response) {
+        List<User> users = userRepository.findAllByAuthenticationServiceIdAndAuthProvider(
+                tokenUser.getAuthenticationServiceId(), tokenUser.getAuthProvider().toString());
+
+        if (users.size() != 1) {
+            expireJwtCookie(response);
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("User in JWT no longer found so cookie deleted: {}", logMessageDetaint(tokenUser.getFullName()));
+            }
+            return null;
+        }
+
+        User user = users.getFirst();
+        writeJwtCookie(response, jwtUtils.createRevalidatedTokenForUser(user, token), user);
+        LOGGER.debug("User in JWT revalidated and cookie reissued");
+        return user;
+    }
+
     public void expireJwtCookie(HttpServletResponse response) {
         Cookie emptyCookie = new Cookie(JWT_COOKIE_NAME, "");
         expireCookie(response, emptyCookie, cookieAccessedByHttpOnly);
@@ -1,7 +1,11 @@
 package com.aidanwhiteley.books.controller.jwt;
 
 import com.aidanwhiteley.books.domain.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.io.Encoders;
@@ -13,8 +17,15 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
 
 @Component
 public class JwtUtils {
@@ -24,7 +35,9 @@ public class JwtUtils {
     private static final String AUTH_PROVIDER = "provider";
     private static final String FULL_NAME = "name";
     private static final String ROLES = "roles";
+    private static final String LAST_CHECKED = "lastChecked";
     private static final String ROLES_DELIMETER = ",";
+    private static final long DEFAULT_VALIDATED_TOKENS_CACHE_MAX_ENTRIES = 1000;
 
     @Setter
     @Value("${books.jwt.expiryInMilliSeconds}")
@@ -33,25 +46,69 @@ public class JwtUtils {
     @Value("${books.jwt.actuatorExpiryInMilliSeconds}")
     private long expiryInMilliSecondsActuator;
 
-    @Setter
     @Value("${books.jwt.secretKey}")
     private String secretKey;
 
-    @Setter
     @Value("${books.jwt.issuer}")
     private String issuer;
 
+    @Setter
+    @Value("${books.jwt.validatedTokensCacheMaxEntries}")
+    private long validatedTokensCacheMaxEntries = DEFAULT_VALIDATED_TOKENS_CACHE_MAX_ENTRIES;
+
+    // Built on first use (rather than on every request) and discarded if the key or issuer is changed
+    private volatile SecretKey secretKeyCrypto;
+    private volatile JwtParser jwtParser;
+    private volatile Cache<String, ValidatedToken> validatedTokens;
+
     public static String createRandomBase64EncodedSecretKey() {
         SecretKey key = Jwts.SIG.HS512.key().build();
         return Encoders.BASE64.encode(key.getEncoded());
     }
 
+    public void setSecretKey(String secretKey) {
+        this.secretKey = secretKey;
+        resetCachedState();
+    }
+
+    public void setIssuer(String issuer) {
+        this.issuer = issuer;
+        resetCachedState();
+    }
+
+    /**
+     * Tokens that have already been verified are held (keyed by a hash of the token) until they expire so
+     * that users browsing many pages don't have their token's signature checked and claims parsed on
+     * every request.
+     */
     public User getUserFromToken(String token) {
-        byte[] key = Decoders.BASE64.decode(secretKey);
-        SecretKey secretKeyCrypto = Keys.hmacShaKeyFor(key);
+        return validatedToken(token).toUser();
+    }
+
+    /**
+     * @return When the user in the token was last checked against the data store - see JwtAuthenticationService.
+     * Tokens without a lastChecked claim are treated as never having been checked.
+     */
+    public Instant getLastCheckedFromToken(String token) {
+        return validatedToken(token).lastChecked();
+    }
 
-        Claims claims = Jwts.parser()
-                .verifyWith(secretKeyCrypto).build()
+    private ValidatedToken validatedToken(String token) {
+        Cache<String, ValidatedToken> tokenCache = validatedTokens();
+        String tokenHash = hashToken(token);
+
+        ValidatedToken validatedToken = tokenCache.getIfPresent(tokenHash);
+        if (validatedToken == null || !validatedToken.expiry().isAfter(Instant.now())) {
+            // Parsing an expired token throws the ExpiredJwtException that callers rely on
+            validatedToken = parseAndValidateToken(token);
+            tokenCache.put(tokenHash, validatedToken);
+        }
+
+        return validatedToken;
+    }
+
+    private ValidatedToken parseAndValidateToken(String token) {
+        Claims claims = jwtParser()
                 .parseSignedClaims(token)
                 .getPayload();
 
@@ -60,6 +117,7 @@ public class JwtUtils {
         String authProvider = (String) claims.get(AUTH_PROVIDER);
         String fullName = (String) claims.get(FULL_NAME);
         String roles = (String) claims.get(ROLES);
+        Long lastChecked = claims.get(LAST_CHECKED, Long.class);
 
         if (!issuer.equals(extractedIssuer)) {
             String errMsg = "Expected token issuer of " + issuer + " but found " + extractedIssuer;
@@ -67,30 +125,38 @@ public class JwtUtils {
             throw new IllegalArgumentException(errMsg);
         }
 
-        User user = User.builder().
-                authenticationServiceId(authenticationServiceId).
-                authProvider(User.AuthenticationProvider.valueOf(authProvider)).
-                fullName(fullName).
-                build();
-
+        List<User.Role> userRoles = new ArrayList<>();
         String[] rolesArray = roles.split(ROLES_DELIMETER);
         for (String s : rolesArray) {
-            user.addRole(User.Role.getRole(Integer.parseInt(s)));
+            userRoles.add(User.Role.getRole(Integer.parseInt(s)));
         }
 
-        return user;
+        return new ValidatedToken(authenticationServiceId, User.AuthenticationProvider.valueOf(authProvider),
+                fullName, List.copyOf(userRoles),
+                claims.getExpiration() == null ? Instant.now() : claims.getExpiration().toInstant(),
+                lastChecked == null ? Instant.EPOCH : Instant.ofEpochSecond(lastChecked));
     }
 
     public String createTokenForUser(User user) {
 
-        ArrayList<String> roles = new ArrayList<>();
-        user.getRoles().forEach(s -> roles.add(String.valueOf(s.getRoleNumber())));
-
         long tokenExpiry = (user.getRoles().size() == 1 && user.getRoles().getFirst() == User.Role.ROLE_ACTUATOR)
                 ? expiryInMilliSecondsActuator : expiryInMilliSeconds;
 
-        byte[] key = Decoders.BASE64.decode(secretKey);
-        SecretKey secretKeyCrypto = Keys.hmacShaKeyFor(key);
+        return createToken(user, new Date(new Date().getTime() + tokenExpiry));
+    }
+
+    /**
+     * Creates a token to replace one whose user has just been checked against the data store. The new token
+     * expires at the same time as the one it replaces so that checking the user doesn't extend their logon.
+     */
+    public String createRevalidatedTokenForUser(User user, String token) {
+        return createToken(user, Date.from(validatedToken(token).expiry()));
+    }
+
+    private String createToken(User user, Date expiration) {
+
+        ArrayList<String> roles = new ArrayList<>();
+        user.getRoles().forEach(s -> roles.add(String.valueOf(s.getRoleNumber())));
 
         return Jwts.builder()
                 .subject(user.getAuthenticationServiceId())
@@ -98,9 +164,84 @@ public class JwtUtils {
                 .claim(AUTH_PROVIDER, user.getAuthProvider())
                 .claim(FULL_NAME, user.getFullName())
                 .claim(ROLES, String.join(ROLES_DELIMETER, roles))
+                .claim(LAST_CHECKED, Instant.now().getEpochSecond())
                 .issuedAt(new Date())
-                .expiration(new Date(new Date().getTime() + tokenExpiry))
-                .signWith(secretKeyCrypto)
+                .expiration(expiration)
+                .signWith(secretKeyCrypto())
                 .compact();
     }
+
+    private SecretKey secretKeyCrypto() {
+        SecretKey key = secretKeyCrypto;
+        if (key == null) {
+            key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+            secretKeyCrypto = key;
+        }
+        return key;
+    }
+
+    private JwtParser jwtParser() {
+        JwtParser parser = jwtParser;
+        if (parser == null) {
+            parser = Jwts.parser().verifyWith(secretKeyCrypto()).build();
+            jwtParser = parser;
+        }
+        return parser;
+    }
+
+    private Cache<String, ValidatedToken> validatedTokens() {
+        Cache<String, ValidatedToken> cache = validatedTokens;
+        if (cache == null) {
+            synchronized (this) {
+                cache = validatedTokens;
+                if (cache == null) {
+                    cache = Caffeine.newBuilder()
+                            .maximumSize(validatedTokensCacheMaxEntries)
+                            .expireAfter(Expiry.<String, ValidatedToken>creating((tokenHash, validatedToken) ->
+                                    durationUntil(validatedToken.expiry())))
+                            .build();
+                    validatedTokens = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private synchronized void resetCachedState() {
+        secretKeyCrypto = null;
+        jwtParser = null;
+        validatedTokens = null;
+    }
+
+    private static Duration durationUntil(Instant expiry) {
+        Duration untilExpiry = Duration.between(Instant.now(), expiry);
+        return untilExpiry.isNegative() ? Duration.ZERO : untilExpiry;
+    }
+
+    private static String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 should always be available", e);
+        }
+    }
+
+    /**
+     * The claims of a verified token. A new User is built from this for each request so that callers
+     * can't change what is cached.
+     */
+    private record ValidatedToken(String authenticationServiceId, User.AuthenticationProvider authProvider,
+                                  String fullName, List<User.Role> roles, Instant expiry, Instant lastChecked) {
+
+        User toUser() {
+            User user = User.builder().
+                    authenticationServiceId(authenticationServiceId).
+                    authProvider(authProvider).
+                    fullName(fullName).
+                    build();
+            roles.forEach(user::addRole);
+            return user;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.aidanwhiteley.books.domain;
 
 import com.aidanwhiteley.books.domain.googlebooks.Item;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import org.hibernate.validator.constraints.Length;
@@ -30,10 +31,25 @@ public class Book extends Auditable {
     @Setter(AccessLevel.PROTECTED)
     private String id;
 
-    // Setter added for Mongo serialisation problems with Spring Boot 2.1.0
+    // Comments are stored in their own collection so that reading a book doesn't read its whole comment
+    // history. Only when a book's comments are asked for is a page of them (most recent first) set here.
+    @Transient
     @Setter
     private List<Comment> comments = new ArrayList<>();
 
+    // Whether there are older comments than those set in the comments field
+    @Transient
+    @Setter
+    private boolean moreComments;
+
+    // Denormalised from the comment collection by the targeted updates that add and remove comments.
+    // Deleted comments aren't counted.
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long commentCount;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private LocalDateTime commentsLastModifiedDateTime;
+
     @NotNull
     @Length(min = 1, max = 100)
     @Setter
@@ -67,8 +83,8 @@ public class Book extends Auditable {
     // The following three transient fields are intended as "helpers" to enable
     // the client side to create links to functionality that will later pass the
     // server side method level security.
-    // Note: These fields are set by the AOP based advice in LimitDataVisibilityAspect
-    //       and this advice is run when a Book (or Page<Book>) is returned to the client.
+    // Note: These fields are set by setPermissionsAndContentForUser which is called on the
+    //       Books returned by the BookRepository "visible" methods used by the JSON API.
     //       For the Htmx based client we don't have the same data security issue and
     //       therefore the advice is not run and these fields are not correctly set
     //       for individual users.
@@ -20,7 +20,7 @@ import java.util.UUID;
 import static com.aidanwhiteley.books.domain.User.Role.*;
 
 @Data
-@Document
+@Document(collection = "comment")
 @EqualsAndHashCode(callSuper = false)
 public class Comment implements Serializable {
 
@@ -35,6 +35,9 @@ public class Comment implements Serializable {
     @Id
     private String id = UUID.randomUUID().toString();
 
+    // Comments are stored in their own collection rather than embedded in the book they are about
+    private String bookId;
+
     @Length(min = 1, max = 1000)
     private String commentText;
 
@@ -48,8 +51,8 @@ public class Comment implements Serializable {
     // The following transient field is intended as a "helper" to enable the
     // client side to create links to functionality that will pass the server
     // side method level security.
-    // As this is set via an AOP advice on the JSON APIs, it is not set / used for
-    // the HTMX version of the UI.
+    // As this is only set for the JSON APIs (see setPermissionsAndContentForUser in Book),
+    // it is not set / used for the HTMX version of the UI.
     @Transient
     @Setter(AccessLevel.NONE)
     private boolean allowDelete;
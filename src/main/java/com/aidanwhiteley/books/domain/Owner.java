@@ -57,6 +57,11 @@ public class Owner implements Serializable {
         this.authProvider = user.getAuthProvider();
     }
 
+    public Owner(Owner owner) {
+        this(owner.authenticationServiceId, owner.firstName, owner.lastName, owner.fullName, owner.email,
+                owner.link, owner.picture, owner.authProvider);
+    }
+
     public void setPermissionsAndContentForUser(User user) {
 
         if (null == user || user.getHighestRole() == ROLE_USER) {
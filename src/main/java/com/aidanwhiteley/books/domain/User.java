@@ -19,7 +19,7 @@ import java.util.Map;
 @AllArgsConstructor
 @EqualsAndHashCode
 @ToString
-@Builder
+@Builder(toBuilder = true)
 public class User {
 
     @Builder.Default
@@ -4,6 +4,8 @@ import com.aidanwhiteley.books.domain.Owner;
 import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.repository.UserRepository;
 import com.aidanwhiteley.books.util.JwtAuthenticationUtils;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,6 +14,8 @@ import org.springframework.stereotype.Component;
 import java.security.Principal;
 import java.util.Optional;
 
+import static com.aidanwhiteley.books.util.CacheConfig.AUDITOR_OWNERS_CACHE;
+
 @Component
 public class BookAuditor implements AuditorAware<Owner> {
 
@@ -19,9 +23,13 @@ public class BookAuditor implements AuditorAware<Owner> {
 
     private final UserRepository userRepository;
 
-    public BookAuditor(JwtAuthenticationUtils jwtAuthenticationUtils, UserRepository userRepository) {
+    private final Cache auditorOwners;
+
+    public BookAuditor(JwtAuthenticationUtils jwtAuthenticationUtils, UserRepository userRepository,
+                       CacheManager cacheManager) {
         this.jwtAuthenticationUtils = jwtAuthenticationUtils;
         this.userRepository = userRepository;
+        this.auditorOwners = cacheManager.getCache(AUDITOR_OWNERS_CACHE);
     }
 
     @SuppressWarnings("NullableProblems")
@@ -31,15 +39,34 @@ public class BookAuditor implements AuditorAware<Owner> {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
         if (authentication != null) {
-            Optional<User> aUser = jwtAuthenticationUtils.
-                    extractUserFromPrincipal((Principal) (authentication.getPrincipal()), true);
+            Principal principal = (Principal) (authentication.getPrincipal());
+            Optional<User> aUser = jwtAuthenticationUtils.extractUserFromPrincipal(principal, true);
 
-            return aUser.map(s -> new Owner(
-                    userRepository.findAllByAuthenticationServiceIdAndAuthProvider(s.getAuthenticationServiceId(), s.getAuthProvider().toString()).getFirst())
-            );
+            return aUser.map(s -> findOwner(principal, s));
         } else {
             return Optional.empty();
         }
     }
 
+    /**
+     * Books are usually saved in a request that has already read the user from the data store (e.g. to check
+     * their permissions) so that user is reused. Otherwise the Owner is cached for a short time across requests.
+     * A copy of the cached Owner is returned as the Owner in a Book can be changed (see setPermissionsAndContentForUser).
+     */
+    private Owner findOwner(Principal principal, User tokenUser) {
+        Optional<User> requestUser = jwtAuthenticationUtils.getUserResolvedForCurrentRequest(principal);
+        if (requestUser.isPresent()) {
+            return new Owner(requestUser.get());
+        }
+
+        String key = tokenUser.getAuthenticationServiceId() + ":" + tokenUser.getAuthProvider();
+        Owner owner = auditorOwners.get(key, Owner.class);
+        if (owner == null) {
+            owner = new Owner(userRepository.findAllByAuthenticationServiceIdAndAuthProvider(
+                    tokenUser.getAuthenticationServiceId(), tokenUser.getAuthProvider().toString()).getFirst());
+            auditorOwners.put(key, owner);
+        }
+        return new Owner(owner);
+    }
+
 }
@@ -0,0 +1,150 @@
+package com.aidanwhiteley.books.repository;
+
+import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.repository.dtos.BookFacetCount;
+import com.aidanwhiteley.books.repository.dtos.BookFacets;
+import com.aidanwhiteley.books.repository.dtos.BooksByAuthor;
+import com.aidanwhiteley.books.repository.dtos.BooksByGenre;
+import com.aidanwhiteley.books.repository.dtos.BooksByRating;
+import com.aidanwhiteley.books.repository.dtos.BooksByReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.aidanwhiteley.books.util.CacheConfig.BOOK_FACETS_CACHE;
+import static com.aidanwhiteley.books.util.LogDetaint.logMessageDetaint;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+/**
+ * Maintains the bookFacetCounts collection that the BookRepository count methods read from.
+ * <p>
+ * Counts are adjusted with atomic $inc upserts as books are created, updated and deleted (see
+ * BookFacetCountsListener) so that reading them never needs a scan of the book collection. The
+ * calculateFacetCountsFromBooks method does the full $group based calculation and is only intended for use
+ * when reconciling the stored counts.
+ */
+@Repository
+public class BookFacetCountsDao {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookFacetCountsDao.class);
+
+    private static final String ID = "_id";
+    private static final String FACET = "facet";
+    private static final String VALUE = "value";
+    private static final String COUNT_OF_BOOKS = "countOfBooks";
+
+    private final MongoTemplate mongoTemplate;
+
+    public BookFacetCountsDao(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @CacheEvict(cacheNames = BOOK_FACETS_CACHE, allEntries = true)
+    public void bookCreated(Book book) {
+        adjustCounts(null, BookFacets.of(book));
+    }
+
+    @CacheEvict(cacheNames = BOOK_FACETS_CACHE, allEntries = true)
+    public void bookUpdated(BookFacets before, Book book) {
+        adjustCounts(before, BookFacets.of(book));
+    }
+
+    @CacheEvict(cacheNames = BOOK_FACETS_CACHE, allEntries = true)
+    public void bookDeleted(BookFacets facets) {
+        adjustCounts(facets, null);
+    }
+
+    @CacheEvict(cacheNames = BOOK_FACETS_CACHE, allEntries = true)
+    public void allBooksDeleted() {
+        mongoTemplate.remove(new Query(), BookFacetCount.class);
+    }
+
+    public List<BookFacetCount> findAll() {
+        return mongoTemplate.findAll(BookFacetCount.class);
+    }
+
+    /**
+     * Calculates what the stored counts should be by grouping over the whole book collection.
+     */
+    public List<BookFacetCount> calculateFacetCountsFromBooks() {
+        List<BookFacetCount> counts = new ArrayList<>();
+
+        groupBooksBy("genre", "genre", BooksByGenre.class).forEach(c ->
+                counts.add(new BookFacetCount(BookFacetCount.Facet.GENRE, c.getGenre(), c.getCountOfBooks())));
+        groupBooksBy("author", "author", BooksByAuthor.class).forEach(c ->
+                counts.add(new BookFacetCount(BookFacetCount.Facet.AUTHOR, c.getAuthor(), c.getCountOfBooks())));
+        groupBooksBy("rating", "rating", BooksByRating.class).stream().filter(c -> c.getRating() != null)
+                .forEach(c -> counts.add(new BookFacetCount(BookFacetCount.Facet.RATING, c.getRating().name(),
+                        c.getCountOfBooks())));
+        groupBooksBy("createdBy.fullName", "reader", BooksByReader.class).forEach(c ->
+                counts.add(new BookFacetCount(BookFacetCount.Facet.READER, c.getReader(), c.getCountOfBooks())));
+
+        return counts.stream().filter(c -> c.getValue() != null).toList();
+    }
+
+    /**
+     * Overwrites stored counts with the supplied values and removes the counts with the supplied ids.
+     * Any concurrent $inc made between the counts being calculated and this method running will be lost
+     * until the next reconciliation.
+     */
+    @CacheEvict(cacheNames = BOOK_FACETS_CACHE, allEntries = true)
+    public void replaceCounts(Collection<BookFacetCount> countsToSave, Collection<String> idsToRemove) {
+        countsToSave.forEach(mongoTemplate::save);
+        if (!idsToRemove.isEmpty()) {
+            mongoTemplate.remove(new Query(Criteria.where(ID).in(idsToRemove)), BookFacetCount.class);
+        }
+    }
+
+    private void adjustCounts(BookFacets before, BookFacets after) {
+        Map<BookFacetCount.Facet, String> oldValues = before == null ? Map.of() : before.asMap();
+        Map<BookFacetCount.Facet, String> newValues = after == null ? Map.of() : after.asMap();
+
+        for (BookFacetCount.Facet facet : BookFacetCount.Facet.values()) {
+            String oldValue = oldValues.get(facet);
+            String newValue = newValues.get(facet);
+            if (!Objects.equals(oldValue, newValue)) {
+                incrementCount(facet, newValue, 1);
+                incrementCount(facet, oldValue, -1);
+            }
+        }
+    }
+
+    private void incrementCount(BookFacetCount.Facet facet, String value, int delta) {
+        if (value == null) {
+            return;
+        }
+
+        String id = BookFacetCount.idFor(facet, value);
+        Query byId = new Query(Criteria.where(ID).is(id));
+        mongoTemplate.upsert(byId, new Update().inc(COUNT_OF_BOOKS, delta).setOnInsert(FACET, facet.name())
+                .setOnInsert(VALUE, value), BookFacetCount.class);
+
+        if (delta < 0) {
+            // Don't leave a zero count behind for a genre / author etc. that no longer has any books
+            mongoTemplate.remove(new Query(Criteria.where(ID).is(id).and(COUNT_OF_BOOKS).lte(0)), BookFacetCount.class);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Count of books for {} adjusted by {}", logMessageDetaint(id), delta);
+        }
+    }
+
+    private <T> List<T> groupBooksBy(String groupField, String resultField, Class<T> resultClass) {
+        Aggregation agg = newAggregation(
+                group(groupField).count().as(COUNT_OF_BOOKS),
+                project(COUNT_OF_BOOKS).and(resultField).previousOperation());
+
+        return mongoTemplate.aggregate(agg, Book.class, resultClass).getMappedResults();
+    }
+}
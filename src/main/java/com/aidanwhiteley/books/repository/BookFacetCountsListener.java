@@ -0,0 +1,120 @@
+package com.aidanwhiteley.books.repository;
+
+import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.repository.dtos.BookFacets;
+import com.aidanwhiteley.books.repository.dtos.ReviewFieldsUpdatedEvent;
+import org.bson.Document;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.MongoMappingEvent;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Keeps the bookFacetCounts collection in step with the books saved to and deleted from the book collection -
+ * whether that is via the BookRepository or the MongoTemplate - using the Spring Data Mongo lifecycle events.
+ * <p>
+ * The facets of the books about to be replaced or deleted are read just before the write so that the counts
+ * for their old values are only adjusted once the write has succeeded. Deleting every book removes every count.
+ * <p>
+ * Targeted updates don't raise these events. The one targeted update that changes counted fields - the update
+ * of a review's fields - is listened for separately. Books written as plain Documents (such as the development data bulk
+ * loaded by the DataLoader) aren't counted either - the counts are rebuilt once they have been loaded.
+ */
+@Component
+public class BookFacetCountsListener implements ApplicationListener<MongoMappingEvent<?>> {
+
+    private static final Document FACET_FIELDS = new Document("genre", 1).append("author", 1).append("rating", 1)
+            .append("createdBy.fullName", 1);
+
+    private final MongoTemplate mongoTemplate;
+    private final BookFacetCountsDao bookFacetCountsDao;
+
+    // Only one write at a time is in progress on a thread so only the facets read for the latest write are kept.
+    // They are keyed on the write's document (the saved document or the delete query) - the same instance is
+    // passed to the before and after events.
+    private final ThreadLocal<PendingWrite> pendingWrite = new ThreadLocal<>();
+
+    public BookFacetCountsListener(MongoTemplate mongoTemplate, BookFacetCountsDao bookFacetCountsDao) {
+        this.mongoTemplate = mongoTemplate;
+        this.bookFacetCountsDao = bookFacetCountsDao;
+    }
+
+    @Override
+    public void onApplicationEvent(MongoMappingEvent<?> event) {
+        if (!mongoTemplate.getCollectionName(Book.class).equals(event.getCollectionName())) {
+            return;
+        }
+
+        switch (event) {
+            case BeforeSaveEvent<?> e when e.getSource() instanceof Book book -> beforeSave(book, e.getDocument());
+            case AfterSaveEvent<?> e when e.getSource() instanceof Book book -> afterSave(book, e.getDocument());
+            case BeforeDeleteEvent<?> e -> beforeDelete(e.getDocument());
+            case AfterDeleteEvent<?> e -> afterDelete(e.getDocument());
+            default -> {
+                // Reads and conversions don't change any counts
+            }
+        }
+    }
+
+    @EventListener
+    public void onReviewFieldsUpdated(ReviewFieldsUpdatedEvent event) {
+        bookFacetCountsDao.bookUpdated(event.facetsBeforeUpdate(), event.book());
+    }
+
+    private void beforeSave(Book book, Document document) {
+        pendingWrite.remove();
+        if (book.getId() != null) {
+            List<BookFacets> existing = findFacets(new Document("_id", document.get("_id")));
+            if (!existing.isEmpty()) {
+                pendingWrite.set(new PendingWrite(document, existing));
+            }
+        }
+    }
+
+    private void afterSave(Book book, Document document) {
+        List<BookFacets> facetsBeforeSave = takeFacetsBeforeWrite(document);
+        if (facetsBeforeSave.isEmpty()) {
+            bookFacetCountsDao.bookCreated(book);
+        } else {
+            bookFacetCountsDao.bookUpdated(facetsBeforeSave.getFirst(), book);
+        }
+    }
+
+    private void beforeDelete(Document query) {
+        pendingWrite.remove();
+        if (query != null && !query.isEmpty()) {
+            pendingWrite.set(new PendingWrite(query, findFacets(query)));
+        }
+    }
+
+    private void afterDelete(Document query) {
+        if (query == null || query.isEmpty()) {
+            bookFacetCountsDao.allBooksDeleted();
+        } else {
+            takeFacetsBeforeWrite(query).forEach(bookFacetCountsDao::bookDeleted);
+        }
+    }
+
+    private List<BookFacets> findFacets(Document query) {
+        return mongoTemplate.find(new BasicQuery(query, FACET_FIELDS), Book.class).stream()
+                .map(BookFacets::of)
+                .toList();
+    }
+
+    private List<BookFacets> takeFacetsBeforeWrite(Document document) {
+        PendingWrite pending = pendingWrite.get();
+        pendingWrite.remove();
+        return pending != null && pending.document() == document ? pending.facets() : List.of();
+    }
+
+    private record PendingWrite(Document document, List<BookFacets> facets) {
+    }
+}
@@ -0,0 +1,92 @@
+package com.aidanwhiteley.books.repository;
+
+import com.aidanwhiteley.books.domain.User;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The fields of a Book and of its Comments that each level of caller of the JSON API isn't allowed to see. They are excluded
+ * from the Mongo query so that, for example, the email addresses of reviewers and commenters are never
+ * even read from the database for an anonymous caller.
+ * <p>
+ * This mirrors the data blanked by setPermissionsAndContentForUser in Book, Comment and Owner - which still
+ * needs calling on the returned books to set their allowXxx flags. Editors are allowed to know which books
+ * and comments they own so the owner ids are read for them and then blanked by setPermissionsAndContentForUser.
+ */
+public enum BookFieldVisibility {
+
+    ANONYMOUS(Exclusions.ALL_OWNER_FIELDS, List.of(), List.of("deletedBy")),
+    USER(Exclusions.ALL_OWNER_FIELDS, List.of(), List.of("deletedBy")),
+    EDITOR(List.of("email"), List.of("lastModifiedBy.authenticationServiceId", "lastModifiedBy.authProvider"),
+            List.of()),
+    ADMIN(List.of(), List.of(), List.of());
+
+    private final List<String> excludedFields;
+    private final List<String> excludedCommentFields;
+
+    BookFieldVisibility(List<String> ownerFields, List<String> otherBookFields, List<String> otherCommentFields) {
+        this.excludedFields = Exclusions.combine(Exclusions.ownerFields(Exclusions.BOOK_OWNERS, ownerFields),
+                otherBookFields);
+        this.excludedCommentFields = Exclusions.combine(Exclusions.ownerFields(Exclusions.COMMENT_OWNERS, ownerFields),
+                otherCommentFields);
+    }
+
+    /**
+     * @param user The caller - null for an anonymous caller.
+     */
+    public static BookFieldVisibility forUser(User user) {
+        if (user == null) {
+            return ANONYMOUS;
+        }
+        return switch (user.getHighestRole()) {
+            case ROLE_ADMIN -> ADMIN;
+            case ROLE_EDITOR -> EDITOR;
+            case ROLE_USER -> USER;
+            // Fail safe for any role that doesn't apply to books
+            default -> ANONYMOUS;
+        };
+    }
+
+    public List<String> getExcludedFields() {
+        return excludedFields;
+    }
+
+    public List<String> getExcludedCommentFields() {
+        return excludedCommentFields;
+    }
+
+    public Query applyTo(Query query) {
+        excludedFields.forEach(query.fields()::exclude);
+        return query;
+    }
+
+    /**
+     * For queries of the comment collection.
+     */
+    public Query applyToComments(Query query) {
+        excludedCommentFields.forEach(query.fields()::exclude);
+        return query;
+    }
+
+    // Enum constructors can't refer to the enum's own static fields - hence this holder class
+    private static final class Exclusions {
+        private static final List<String> ALL_OWNER_FIELDS = List.of("authenticationServiceId", "firstName",
+                "lastName", "fullName", "email", "link", "picture", "authProvider");
+        private static final List<String> BOOK_OWNERS = List.of("createdBy", "lastModifiedBy");
+        private static final List<String> COMMENT_OWNERS = List.of("owner");
+
+        private static List<String> ownerFields(List<String> owners, List<String> fields) {
+            List<String> ownerFields = new ArrayList<>();
+            owners.forEach(owner -> fields.forEach(field -> ownerFields.add(owner + "." + field)));
+            return ownerFields;
+        }
+
+        private static List<String> combine(List<String> fields, List<String> otherFields) {
+            List<String> combined = new ArrayList<>(fields);
+            combined.addAll(otherFields);
+            return List.copyOf(combined);
+        }
+    }
+}
@@ -2,15 +2,23 @@ package com.aidanwhiteley.books.repository;
 
 import com.aidanwhiteley.books.domain.Book;
 import com.aidanwhiteley.books.domain.Comment;
+import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.domain.googlebooks.Item;
+import com.aidanwhiteley.books.repository.dtos.BookCursorQuery;
 import com.aidanwhiteley.books.repository.dtos.BooksByAuthor;
 import com.aidanwhiteley.books.repository.dtos.BooksByGenre;
 import com.aidanwhiteley.books.repository.dtos.BooksByRating;
 import com.aidanwhiteley.books.repository.dtos.BooksByReader;
+import com.aidanwhiteley.books.repository.dtos.BookSummary;
+import com.aidanwhiteley.books.repository.dtos.BookVersion;
+import com.aidanwhiteley.books.repository.dtos.CursorPage;
+import com.aidanwhiteley.books.repository.dtos.UpdatedBook;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface BookRepositoryCustomMethods {
 
@@ -22,17 +30,74 @@ public interface BookRepositoryCustomMethods {
 
     List<BooksByReader> countBooksByReader();
 
+    /**
+     * Comments are stored in their own collection. The following methods return a Book with JUST the id, the
+     * comment count and a page of comments - most recent first - populated. The moreComments flag says
+     * whether there are older comments. The page size is books.comments.pageSize unless a Pageable is given.
+     */
     Book findCommentsForBook(String bookId);
 
+    Optional<Book> findCommentsForBook(String bookId, Pageable pageable);
+
+    /**
+     * The Book has had setPermissionsAndContentForUser called for the user - see the "visible" methods below.
+     */
+    Optional<Book> findVisibleCommentsForBook(String bookId, Pageable pageable, User user);
+
+    /**
+     * @return The whole book along with the most recent page of its comments.
+     */
+    Optional<Book> findBookWithCommentsById(String id);
+
+    /**
+     * @return The comment if it is a comment on the book.
+     */
+    Optional<Comment> findCommentForBook(String bookId, String commentId);
+
     Book addCommentToBook(String bookId, Comment comment);
 
+    /**
+     * Use rather than deleteById so that the book's comments are deleted along with the book.
+     */
+    void deleteBookAndComments(String id);
+
+    /**
+     * Comments used to be stored embedded in each book. Moves any found there to the comment collection and
+     * sets the denormalised comment count on the book.
+     *
+     * @return The number of books whose comments were moved.
+     */
+    int moveEmbeddedCommentsToCommentCollection();
+
+    /**
+     * @return The last modified time, comment state and Google Books data id of the book read by a
+     * projection query - see BookVersion.
+     * The Optional is empty if there is no such book.
+     */
+    Optional<BookVersion> findBookVersion(String bookId);
+
     void addGoogleBookItemToBook(String bookId, Item item);
 
+    /**
+     * Sets the fields of a review that can be edited (title, author, genre, summary, rating and Google book id)
+     * along with the auditing fields, without reading or rewriting the rest of the book. So comments and Google
+     * Books data added while the review was being edited are kept.
+     * <p>
+     * The Google Books data is removed if the review no longer has a Google book id. If googleBookDetails are
+     * supplied they are set in the same update. If they aren't and the Google book id has changed, the Google
+     * Books data of the previous Google book is removed - it is up to the caller to add the new data.
+     * <p>
+     * Unless the user is an admin, only a book created by the user is updated.
+     *
+     * @return Empty if there is no book with the id that the user is allowed to update.
+     */
+    Optional<UpdatedBook> updateReviewFields(Book review, User user, Item googleBookDetails);
+
     /**
      * Marks a comment as deleted. Empties the comment text and  marks comment as deleted.
      * Doesn't actually remove the Comment from the database.
      *
-     * @return Returns a Book with JUST the comments and the bookId populated
+     * @return Returns a Book with JUST the most recent comments, the comment count and the bookId populated
      */
     Book removeCommentFromBook(String bookId, String commentId, String removerName);
 
@@ -42,4 +107,57 @@ public interface BookRepositoryCustomMethods {
      * each of the indexed fields.
      */
     Page<Book> searchForBooks(String searchPhrase, Pageable pageable);
+
+    /*
+     * The following "summary" methods return just the data needed to list books on the
+     * HTMX pages - see BookSummary. They avoid reading the review summary and the
+     * Google Books details from Mongo.
+     */
+    Page<BookSummary> findSummariesByOrderByCreatedDateTimeDesc(Pageable page);
+
+    Page<BookSummary> findSummariesByAuthorOrderByCreatedDateTimeDesc(Pageable page, String author);
+
+    Page<BookSummary> findSummariesByGenreOrderByCreatedDateTimeDesc(Pageable page, String genre);
+
+    Page<BookSummary> findSummariesByRatingOrderByCreatedDateTimeDesc(Pageable page, Book.Rating rating);
+
+    Page<BookSummary> findSummariesByReaderOrderByCreatedDateTimeDesc(Pageable page, String reader);
+
+    Page<BookSummary> searchForBookSummaries(String searchPhrase, Pageable pageable);
+
+    /*
+     * Keyset pagination - most recently created books first. Unlike the Pageable based methods above, the
+     * cost of retrieving a page doesn't grow with how far through the books the page is. A count query is
+     * only run if the total number of matching books is asked for.
+     */
+    CursorPage<Book> findBooksByCursor(BookCursorQuery cursorQuery);
+
+    CursorPage<BookSummary> findSummariesByCursor(BookCursorQuery cursorQuery);
+
+    /*
+     * The following "visible" methods are for the JSON API. The fields the user isn't allowed to see are
+     * excluded in the Mongo query (see BookFieldVisibility) and the returned books have already had
+     * setPermissionsAndContentForUser called for the user. A null user means an anonymous caller.
+     */
+    Optional<Book> findVisibleBookById(String id, User user);
+
+    Page<Book> findVisibleBooksByOrderByCreatedDateTimeDesc(Pageable page, User user);
+
+    Page<Book> findVisibleBooksByAuthorOrderByCreatedDateTimeDesc(Pageable page, String author, User user);
+
+    Page<Book> findVisibleBooksByGenreOrderByCreatedDateTimeDesc(Pageable page, String genre, User user);
+
+    Page<Book> findVisibleBooksByRatingOrderByCreatedDateTimeDesc(Pageable page, Book.Rating rating, User user);
+
+    Page<Book> findVisibleBooksByReaderOrderByCreatedDateTimeDesc(Pageable page, String reader, User user);
+
+    Page<Book> searchForVisibleBooks(String searchPhrase, Pageable pageable, User user);
+
+    CursorPage<Book> findVisibleBooksByCursor(BookCursorQuery cursorQuery, User user);
+
+    /**
+     * Streams, from a Mongo cursor, just the fields of each book needed for a Goodreads export. Only the books
+     * created by the owner are included unless the owner is null. The returned Stream must be closed.
+     */
+    Stream<Book> streamBooksForGoodReadsExport(User owner);
 }
@@ -2,28 +2,52 @@ package com.aidanwhiteley.books.repository;
 
 import com.aidanwhiteley.books.domain.Book;
 import com.aidanwhiteley.books.domain.Comment;
+import com.aidanwhiteley.books.domain.Owner;
+import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.domain.googlebooks.Item;
+import com.aidanwhiteley.books.repository.dtos.BookCursor;
+import com.aidanwhiteley.books.repository.dtos.BookCursorQuery;
+import com.aidanwhiteley.books.repository.dtos.BookFacetCount;
+import com.aidanwhiteley.books.repository.dtos.BookFacets;
 import com.aidanwhiteley.books.repository.dtos.BooksByAuthor;
 import com.aidanwhiteley.books.repository.dtos.BooksByGenre;
 import com.aidanwhiteley.books.repository.dtos.BooksByRating;
 import com.aidanwhiteley.books.repository.dtos.BooksByReader;
+import com.aidanwhiteley.books.repository.dtos.BookSummary;
+import com.aidanwhiteley.books.repository.dtos.BookVersion;
+import com.aidanwhiteley.books.repository.dtos.CursorPage;
+import com.aidanwhiteley.books.repository.dtos.ReviewFieldsUpdatedEvent;
+import com.aidanwhiteley.books.repository.dtos.UpdatedBook;
 import com.aidanwhiteley.books.repository.exceptions.CommentsStorageException;
 import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.*;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
-import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+import static com.aidanwhiteley.books.util.CacheConfig.BOOK_FACETS_CACHE;
 
 @Repository
 public class BookRepositoryImpl implements BookRepositoryCustomMethods {
@@ -36,87 +60,173 @@ public class BookRepositoryImpl implements BookRepositoryCustomMethods {
     private static final String GENRE = "genre";
     private static final String RATING = "rating";
     private static final String COMMENTS = "comments";
+    private static final String COMMENT_COUNT = "commentCount";
+    private static final String COMMENTS_LAST_MODIFIED_DATE_TIME = "commentsLastModifiedDateTime";
+    private static final String BOOK_ID = "bookId";
+    private static final String ENTERED = "entered";
+    private static final String DELETED = "deleted";
+    private static final String FACET_VALUE = "value";
+    private static final String CREATED_DATE_TIME = "createdDateTime";
+    private static final String ID = "_id";
+    private static final String GOOGLE_BOOK_ID = "googleBookId";
+    private static final String GOOGLE_BOOK_DETAILS = "googleBookDetails";
+    private static final String[] BOOK_SUMMARY_FIELDS = {ID, "title", AUTHOR, GENRE, RATING, CREATED_DATE_TIME,
+            "googleBookId", "googleBookDetails.volumeInfo.imageLinks"};
+    private static final String[] GOOD_READS_EXPORT_FIELDS = {ID, "title", AUTHOR, RATING, CREATED_DATE_TIME,
+            "googleBookDetails.volumeInfo.industryIdentifiers"};
+    private static final String[] BOOK_VERSION_FIELDS = {ID, "lastModifiedDateTime", COMMENT_COUNT,
+            COMMENTS_LAST_MODIFIED_DATE_TIME, "googleBookDetails.selfLink"};
+    private static final String[] REVIEW_UPDATE_FIELDS = {ID, AUTHOR, GENRE, RATING, "createdBy.fullName",
+            GOOGLE_BOOK_ID};
 
     private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public BookRepositoryImpl(MongoTemplate mongoTemplate) {
+    @Value("${books.comments.pageSize}")
+    private int commentsPageSize;
+
+    public BookRepositoryImpl(MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher) {
         this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
+    @Cacheable(cacheNames = BOOK_FACETS_CACHE, key = "'" + GENRE + "'")
     public List<BooksByGenre> countBooksByGenre() {
-        Aggregation agg = newAggregation(
-                group(GENRE).count().as(COUNT_OF_BOOKS),
-                project(COUNT_OF_BOOKS).and(GENRE).previousOperation(),
-                sort(Sort.Direction.DESC, COUNT_OF_BOOKS));
-
-        //Convert the aggregation result into a List
-        AggregationResults<BooksByGenre> groupResults
-                = mongoTemplate.aggregate(agg, Book.class, BooksByGenre.class);
-        return groupResults.getMappedResults();
+        return findFacetCounts(BookFacetCount.Facet.GENRE, Sort.by(Sort.Direction.DESC, COUNT_OF_BOOKS)).stream()
+                .map(c -> new BooksByGenre(c.getValue(), c.getCountOfBooks()))
+                .toList();
     }
 
     @Override
+    @Cacheable(cacheNames = BOOK_FACETS_CACHE, key = "'" + RATING + "'")
     public List<BooksByRating> countBooksByRating() {
-        Aggregation agg = newAggregation(
-                group(RATING).count().as(COUNT_OF_BOOKS),
-                project(COUNT_OF_BOOKS).and(RATING).previousOperation(),
-                sort(Sort.Direction.DESC, COUNT_OF_BOOKS));
-
-        AggregationResults<BooksByRating> groupResults
-                = mongoTemplate.aggregate(agg, Book.class, BooksByRating.class);
-        return groupResults.getMappedResults();
+        return findFacetCounts(BookFacetCount.Facet.RATING, Sort.by(Sort.Direction.DESC, COUNT_OF_BOOKS)).stream()
+                .map(c -> new BooksByRating(Book.Rating.valueOf(c.getValue()), c.getCountOfBooks()))
+                .toList();
     }
 
     @Override
+    @Cacheable(cacheNames = BOOK_FACETS_CACHE, key = "'" + AUTHOR + "'")
     public List<BooksByAuthor> countBooksByAuthor() {
-        Aggregation agg = newAggregation(
-                group(AUTHOR).count().as(COUNT_OF_BOOKS),
-                project(COUNT_OF_BOOKS).and(AUTHOR).previousOperation(),
-                sort(Sort.Direction.ASC, AUTHOR));
-
-        AggregationResults<BooksByAuthor> groupResults
-                = mongoTemplate.aggregate(agg, Book.class, BooksByAuthor.class);
-        return groupResults.getMappedResults();
+        return findFacetCounts(BookFacetCount.Facet.AUTHOR, Sort.by(Sort.Direction.ASC, FACET_VALUE)).stream()
+                .map(c -> new BooksByAuthor(c.getValue(), c.getCountOfBooks()))
+                .toList();
     }
 
     @Override
+    @Cacheable(cacheNames = BOOK_FACETS_CACHE, key = "'" + READER + "'")
     public List<BooksByReader> countBooksByReader() {
-        Aggregation agg = newAggregation(
-                group("createdBy.fullName").count().as(COUNT_OF_BOOKS),
-                project(COUNT_OF_BOOKS).and(READER).previousOperation(),
-                sort(Sort.Direction.ASC, READER));
+        return findFacetCounts(BookFacetCount.Facet.READER, Sort.by(Sort.Direction.ASC, FACET_VALUE)).stream()
+                .map(c -> new BooksByReader(c.getValue(), c.getCountOfBooks()))
+                .toList();
+    }
 
-        AggregationResults<BooksByReader> groupResults
-                = mongoTemplate.aggregate(agg, Book.class, BooksByReader.class);
-        return groupResults.getMappedResults();
+    /**
+     * Reads from the bookFacetCounts collection maintained by BookFacetCountsDao rather than grouping
+     * over the whole of the book collection.
+     */
+    private List<BookFacetCount> findFacetCounts(BookFacetCount.Facet facet, Sort sort) {
+        Query query = new Query(Criteria.where("facet").is(facet.name()).and(COUNT_OF_BOOKS).gt(0)).with(sort);
+        return mongoTemplate.find(query, BookFacetCount.class);
     }
 
     @Override
     public Book findCommentsForBook(String bookId) {
+        return findCommentsForBook(bookId, PageRequest.of(0, commentsPageSize)).orElseThrow();
+    }
+
+    @Override
+    public Optional<Book> findCommentsForBook(String bookId, Pageable pageable) {
+        return findCommentsForBook(bookId, pageable, query -> {
+        });
+    }
+
+    @Override
+    public Optional<Book> findVisibleCommentsForBook(String bookId, Pageable pageable, User user) {
+        Optional<Book> book = findCommentsForBook(bookId, pageable, BookFieldVisibility.forUser(user)::applyToComments);
+        book.ifPresent(b -> b.setPermissionsAndContentForUser(user));
+        return book;
+    }
+
+    private Optional<Book> findCommentsForBook(String bookId, Pageable pageable, Consumer<Query> projection) {
+        Optional<Book> book = Optional.ofNullable(findCommentsHeader(bookId));
+        book.ifPresent(b -> setPageOfComments(b, pageable, projection));
+        return book;
+    }
+
+    @Override
+    public Optional<Book> findBookWithCommentsById(String id) {
+        Optional<Book> book = Optional.ofNullable(mongoTemplate.findById(id, Book.class));
+        book.ifPresent(b -> setPageOfComments(b, PageRequest.of(0, commentsPageSize), query -> {
+        }));
+        return book;
+    }
+
+    @Override
+    public Optional<Comment> findCommentForBook(String bookId, String commentId) {
+        Query query = new Query(Criteria.where("id").is(commentId).and(BOOK_ID).is(bookId));
+        return Optional.ofNullable(mongoTemplate.findOne(query, Comment.class));
+    }
+
+    /**
+     * Sets a page of the book's comments - most recent first - and whether there are any older comments.
+     */
+    private void setPageOfComments(Book book, Pageable pageable, Consumer<Query> projection) {
+
+        // Read one more than asked for to find out if there are older comments
+        Query query = new Query(Criteria.where(BOOK_ID).is(book.getId()))
+                .with(Sort.by(Sort.Direction.DESC, ENTERED, ID))
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1);
+        projection.accept(query);
+
+        List<Comment> comments = mongoTemplate.find(query, Comment.class);
+        book.setMoreComments(comments.size() > pageable.getPageSize());
+        book.setComments(book.isMoreComments() ? new ArrayList<>(comments.subList(0, pageable.getPageSize())) : comments);
+    }
+
+    @Override
+    public Optional<BookVersion> findBookVersion(String bookId) {
         Query query = new Query(Criteria.where("id").is(bookId));
-        query.fields().include("_id").include(COMMENTS);
-        return mongoTemplate.find(query, Book.class).getFirst();
+        query.fields().include(BOOK_VERSION_FIELDS);
+        Book book = mongoTemplate.findOne(query, Book.class);
+        if (book == null) {
+            return Optional.empty();
+        }
+
+        String googleBookDetailsSelfLink = book.getGoogleBookDetails() == null ? null :
+                book.getGoogleBookDetails().getSelfLink();
+
+        return Optional.of(new BookVersion(book.getId(), book.getLastModifiedDateTime(), book.getCommentCount(),
+                book.getCommentsLastModifiedDateTime(), googleBookDetailsSelfLink));
     }
 
     @Override
     public Book addCommentToBook(String bookId, Comment comment) {
-        UpdateResult updateResult = mongoTemplate.updateFirst(
-                Query.query(Criteria.where("id").is(bookId)),
-                new Update().push(COMMENTS, comment), Book.class);
 
-        if (updateResult.getMatchedCount() != 1) {
-            LOGGER.error("Failed to add a comment to bookId {}. UpdateResult: {} ", bookId, updateResult);
+        // The comment is stored before it is counted so that a failed insert can't leave the book's comment
+        // count including a comment that doesn't exist
+        comment.setBookId(bookId);
+        mongoTemplate.insert(comment);
+        Book book = updateCommentCount(bookId, 1);
+
+        if (book == null) {
+            mongoTemplate.remove(Query.query(Criteria.where("id").is(comment.getId())), Comment.class);
+            LOGGER.error("Failed to add a comment to bookId {} as the book wasn't found", bookId);
             throw new CommentsStorageException("Failed to add a comment");
         }
-        return findCommentsForBook(bookId);
+
+        setPageOfComments(book, PageRequest.of(0, commentsPageSize), query -> {
+        });
+        return book;
     }
 
     @Override
     public void addGoogleBookItemToBook(String bookId, Item item) {
         Query query = new Query(Criteria.where("id").is(bookId));
         Update update = new Update();
-        update.set("googleBookDetails", item);
+        update.set(GOOGLE_BOOK_DETAILS, item);
 
         UpdateResult result = mongoTemplate.updateFirst(query, update, Book.class);
 
@@ -126,28 +236,178 @@ public class BookRepositoryImpl implements BookRepositoryCustomMethods {
         }
     }
 
+    @Override
+    public Optional<UpdatedBook> updateReviewFields(Book review, User user, Item googleBookDetails) {
+        Criteria criteria = Criteria.where("id").is(review.getId());
+        if (!user.getRoles().contains(User.Role.ROLE_ADMIN)) {
+            criteria.and("createdBy.authenticationServiceId").is(user.getAuthenticationServiceId())
+                    .and("createdBy.authProvider").is(user.getAuthProvider());
+        }
+
+        String googleBookId = review.getGoogleBookId() == null || review.getGoogleBookId().isEmpty() ? null :
+                review.getGoogleBookId();
+        Owner modifiedBy = new Owner(user);
+        LocalDateTime modifiedDateTime = LocalDateTime.now();
+
+        Update update = new Update()
+                .set("title", review.getTitle())
+                .set(AUTHOR, review.getAuthor())
+                .set(GENRE, review.getGenre())
+                .set("summary", review.getSummary())
+                .set(RATING, review.getRating())
+                .set(GOOGLE_BOOK_ID, review.getGoogleBookId())
+                .set("lastModifiedBy", modifiedBy)
+                .set("lastModifiedDateTime", modifiedDateTime);
+        if (googleBookId == null) {
+            update.unset(GOOGLE_BOOK_DETAILS);
+        } else if (googleBookDetails != null) {
+            update.set(GOOGLE_BOOK_DETAILS, googleBookDetails);
+        }
+
+        // The book as it was before the update is returned so that the facet counts for the old values can be
+        // adjusted and a change of Google book id spotted. Only the fields needed for that are read back.
+        Query query = new Query(criteria);
+        query.fields().include(REVIEW_UPDATE_FIELDS);
+        Book book = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(false),
+                Book.class);
+        if (book == null) {
+            return Optional.empty();
+        }
+
+        BookFacets facetsBeforeUpdate = BookFacets.of(book);
+        String googleBookIdBeforeUpdate = book.getGoogleBookId();
+
+        if (googleBookId != null && googleBookDetails == null &&
+                !googleBookId.equalsIgnoreCase(Objects.toString(googleBookIdBeforeUpdate, ""))) {
+            // So that the book is never left with the details of a different Google book. The details for the
+            // new Google book id are added later - e.g. by a Google Books enrichment job that the caller requests
+            // when it sees the id has changed. Doesn't match if the id has since changed again.
+            mongoTemplate.updateFirst(
+                    new Query(Criteria.where("id").is(review.getId()).and(GOOGLE_BOOK_ID).is(googleBookId)),
+                    new Update().unset(GOOGLE_BOOK_DETAILS), Book.class);
+        }
+
+        // The rest of the review fields are brought up to date in memory rather than by another read
+        book.setTitle(review.getTitle());
+        book.setAuthor(review.getAuthor());
+        book.setGenre(review.getGenre());
+        book.setSummary(review.getSummary());
+        book.setRating(review.getRating());
+        book.setGoogleBookId(review.getGoogleBookId());
+        book.setGoogleBookDetails(googleBookId == null ? null : googleBookDetails);
+        book.setLastModifiedBy(modifiedBy);
+        book.setLastModifiedDateTime(modifiedDateTime);
+
+        // The MongoTemplate only raises save events for whole document saves so this targeted update is
+        // announced separately for listeners such as the SiteRssFeedInvalidator.
+        eventPublisher.publishEvent(new ReviewFieldsUpdatedEvent(book, facetsBeforeUpdate));
+        return Optional.of(new UpdatedBook(book, facetsBeforeUpdate, googleBookIdBeforeUpdate));
+    }
+
     @Override
     public Book removeCommentFromBook(String bookId, String commentId, String removerName) {
 
+        Query commentQuery = Query.query(Criteria.where("id").is(commentId).and(BOOK_ID).is(bookId));
         UpdateResult updateResult = mongoTemplate.updateFirst(
-                Query.query(Criteria.where("id").is(bookId).and("comments.id").is(commentId)),
-                new Update().set("comments.$.commentText", "").set("comments.$.deleted", true).set("comments.$.deletedBy", removerName),
-                Book.class);
+                Query.of(commentQuery).addCriteria(Criteria.where(DELETED).is(false)),
+                new Update().set("commentText", "").set(DELETED, true).set("deletedBy", removerName),
+                Comment.class);
 
-        if (updateResult.getMatchedCount() != 1) {
+        Book book;
+        if (updateResult.getMatchedCount() == 1) {
+            book = updateCommentCount(bookId, -1);
+        } else if (mongoTemplate.exists(commentQuery, Comment.class)) {
+            // The comment had already been removed
+            book = findCommentsHeader(bookId);
+        } else {
+            book = null;
+        }
+
+        if (book == null) {
             LOGGER.error("Failed to remove commentId {} from bookId {}. UpdateResult: {} ", commentId, bookId, updateResult);
             throw new CommentsStorageException("Failed to remove a comment");
         }
-        return findCommentsForBook(bookId);
+
+        setPageOfComments(book, PageRequest.of(0, commentsPageSize), query -> {
+        });
+        return book;
+    }
+
+    /**
+     * Atomically changes the book's comment count and returns the book's id and comment fields as they are
+     * after the change - so there is no need for a separate read of the book. Null if there is no such book.
+     */
+    private Book updateCommentCount(String bookId, int change) {
+        Query query = Query.query(Criteria.where("id").is(bookId));
+        query.fields().include(ID, COMMENT_COUNT, COMMENTS_LAST_MODIFIED_DATE_TIME);
+        return mongoTemplate.findAndModify(query,
+                new Update().inc(COMMENT_COUNT, change).set(COMMENTS_LAST_MODIFIED_DATE_TIME, LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true), Book.class);
+    }
+
+    private Book findCommentsHeader(String bookId) {
+        Query query = new Query(Criteria.where("id").is(bookId));
+        query.fields().include(ID, COMMENT_COUNT, COMMENTS_LAST_MODIFIED_DATE_TIME);
+        return mongoTemplate.findOne(query, Book.class);
+    }
+
+    @Override
+    public void deleteBookAndComments(String id) {
+        mongoTemplate.remove(Query.query(Criteria.where("id").is(id)), Book.class);
+        mongoTemplate.remove(Query.query(Criteria.where(BOOK_ID).is(id)), Comment.class);
+    }
+
+    @Override
+    public int moveEmbeddedCommentsToCommentCollection() {
+        String bookCollection = mongoTemplate.getCollectionName(Book.class);
+        Query query = new Query(Criteria.where(COMMENTS).exists(true));
+        query.fields().include(ID, COMMENTS);
+
+        // Comments are no longer mapped as part of a Book so the embedded comments are read as plain documents
+        List<Document> books = mongoTemplate.find(query, Document.class, bookCollection);
+        books.forEach(book -> {
+            Object id = book.get(ID);
+            String bookId = id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id);
+
+            List<Comment> comments = book.getList(COMMENTS, Document.class, List.of()).stream()
+                    .map(c -> mongoTemplate.getConverter().read(Comment.class, c))
+                    .toList();
+            // Saving rather than inserting so that a migration interrupted part way through can simply be rerun
+            comments.forEach(c -> {
+                c.setBookId(bookId);
+                mongoTemplate.save(c);
+            });
+
+            Update update = new Update().unset(COMMENTS)
+                    .set(COMMENT_COUNT, comments.stream().filter(c -> !c.isDeleted()).count());
+            comments.stream().map(Comment::getEntered).filter(Objects::nonNull).max(Comparator.naturalOrder())
+                    .ifPresent(lastEntered -> update.set(COMMENTS_LAST_MODIFIED_DATE_TIME, lastEntered));
+            mongoTemplate.updateFirst(new Query(Criteria.where(ID).is(id)), update, bookCollection);
+        });
+
+        return books.size();
     }
 
     @Override
     public Page<Book> searchForBooks(String searchPhrase, Pageable pageable) {
+        return searchForBooks(searchPhrase, pageable, query -> {
+        });
+    }
+
+    @Override
+    public Page<Book> searchForVisibleBooks(String searchPhrase, Pageable pageable, User user) {
+        Page<Book> books = searchForBooks(searchPhrase, pageable, BookFieldVisibility.forUser(user)::applyTo);
+        books.forEach(b -> b.setPermissionsAndContentForUser(user));
+        return books;
+    }
+
+    private Page<Book> searchForBooks(String searchPhrase, Pageable pageable, Consumer<Query> projection) {
 
         TextCriteria criteria = TextCriteria.forDefaultLanguage()
                 .matching(searchPhrase);
         Query query = TextQuery.queryText(criteria)
                 .sortByScore().with(pageable);
+        projection.accept(query);
 
         List<Book> books = mongoTemplate.find(query, Book.class);
 
@@ -158,4 +418,199 @@ public class BookRepositoryImpl implements BookRepositoryCustomMethods {
                 pageable,
                 () -> mongoTemplate.count(countQuery, Book.class));
     }
+
+    @Override
+    public Page<BookSummary> findSummariesByOrderByCreatedDateTimeDesc(Pageable page) {
+        return findBookSummaries(new Criteria(), page);
+    }
+
+    @Override
+    public Page<BookSummary> findSummariesByAuthorOrderByCreatedDateTimeDesc(Pageable page, String author) {
+        return findBookSummaries(Criteria.where(AUTHOR).is(author), page);
+    }
+
+    @Override
+    public Page<BookSummary> findSummariesByGenreOrderByCreatedDateTimeDesc(Pageable page, String genre) {
+        return findBookSummaries(Criteria.where(GENRE).is(genre), page);
+    }
+
+    @Override
+    public Page<BookSummary> findSummariesByRatingOrderByCreatedDateTimeDesc(Pageable page, Book.Rating rating) {
+        return findBookSummaries(Criteria.where(RATING).is(rating), page);
+    }
+
+    @Override
+    public Page<BookSummary> findSummariesByReaderOrderByCreatedDateTimeDesc(Pageable page, String reader) {
+        return findBookSummaries(Criteria.where("createdBy.fullName").is(reader), page);
+    }
+
+    @Override
+    public Page<BookSummary> searchForBookSummaries(String searchPhrase, Pageable pageable) {
+
+        TextCriteria criteria = TextCriteria.forDefaultLanguage()
+                .matching(searchPhrase);
+        Query query = TextQuery.queryText(criteria)
+                .sortByScore().with(pageable);
+        query.fields().include(BOOK_SUMMARY_FIELDS);
+
+        List<BookSummary> books = mongoTemplate.query(Book.class).as(BookSummary.class).matching(query).all();
+
+        Query countQuery = TextQuery.queryText(criteria);
+
+        return PageableExecutionUtils.getPage(
+                books,
+                pageable,
+                () -> mongoTemplate.count(countQuery, Book.class));
+    }
+
+    @Override
+    public CursorPage<Book> findBooksByCursor(BookCursorQuery cursorQuery) {
+        return findByCursor(cursorQuery, Book.class, b -> new BookCursor(b.getCreatedDateTime(), b.getId()),
+                query -> {
+                });
+    }
+
+    @Override
+    public CursorPage<BookSummary> findSummariesByCursor(BookCursorQuery cursorQuery) {
+        return findByCursor(cursorQuery, BookSummary.class, b -> new BookCursor(b.getCreatedDateTime(), b.getId()),
+                query -> query.fields().include(BOOK_SUMMARY_FIELDS));
+    }
+
+    @Override
+    public Optional<Book> findVisibleBookById(String id, User user) {
+        BookFieldVisibility visibility = BookFieldVisibility.forUser(user);
+        Query query = visibility.applyTo(new Query(Criteria.where("id").is(id)));
+        Optional<Book> book = Optional.ofNullable(mongoTemplate.findOne(query, Book.class));
+        book.ifPresent(b -> {
+            setPageOfComments(b, PageRequest.of(0, commentsPageSize), visibility::applyToComments);
+            b.setPermissionsAndContentForUser(user);
+        });
+        return book;
+    }
+
+    @Override
+    public Page<Book> findVisibleBooksByOrderByCreatedDateTimeDesc(Pageable page, User user) {
+        return findVisibleBooks(new Criteria(), page, user);
+    }
+
+    @Override
+    public Page<Book> findVisibleBooksByAuthorOrderByCreatedDateTimeDesc(Pageable page, String author, User user) {
+        return findVisibleBooks(Criteria.where(AUTHOR).is(author), page, user);
+    }
+
+    @Override
+    public Page<Book> findVisibleBooksByGenreOrderByCreatedDateTimeDesc(Pageable page, String genre, User user) {
+        return findVisibleBooks(Criteria.where(GENRE).is(genre), page, user);
+    }
+
+    @Override
+    public Page<Book> findVisibleBooksByRatingOrderByCreatedDateTimeDesc(Pageable page, Book.Rating rating, User user) {
+        return findVisibleBooks(Criteria.where(RATING).is(rating), page, user);
+    }
+
+    @Override
+    public Page<Book> findVisibleBooksByReaderOrderByCreatedDateTimeDesc(Pageable page, String reader, User user) {
+        return findVisibleBooks(Criteria.where("createdBy.fullName").is(reader), page, user);
+    }
+
+    @Override
+    public CursorPage<Book> findVisibleBooksByCursor(BookCursorQuery cursorQuery, User user) {
+        CursorPage<Book> books = findByCursor(cursorQuery, Book.class,
+                b -> new BookCursor(b.getCreatedDateTime(), b.getId()), BookFieldVisibility.forUser(user)::applyTo);
+        books.getContent().forEach(b -> b.setPermissionsAndContentForUser(user));
+        return books;
+    }
+
+    @Override
+    public Stream<Book> streamBooksForGoodReadsExport(User owner) {
+        Criteria criteria = owner == null ? new Criteria() :
+                Criteria.where("createdBy.authenticationServiceId").is(owner.getAuthenticationServiceId())
+                        .and("createdBy.authProvider").is(owner.getAuthProvider());
+
+        Query query = new Query(criteria);
+        query.fields().include(GOOD_READS_EXPORT_FIELDS);
+
+        return mongoTemplate.stream(query, Book.class);
+    }
+
+    private <T> CursorPage<T> findByCursor(BookCursorQuery cursorQuery, Class<T> resultType,
+                                           Function<T, BookCursor> cursorOf, Consumer<Query> projection) {
+
+        if (cursorQuery.getSize() < 1) {
+            throw new IllegalArgumentException("Cannot request a page of less than one book");
+        }
+
+        List<Criteria> filters = new ArrayList<>();
+        if (cursorQuery.getAuthor() != null) {
+            filters.add(Criteria.where(AUTHOR).is(cursorQuery.getAuthor()));
+        }
+        if (cursorQuery.getGenre() != null) {
+            filters.add(Criteria.where(GENRE).is(cursorQuery.getGenre()));
+        }
+        if (cursorQuery.getRating() != null) {
+            filters.add(Criteria.where(RATING).is(cursorQuery.getRating()));
+        }
+        if (cursorQuery.getReader() != null) {
+            filters.add(Criteria.where("createdBy.fullName").is(cursorQuery.getReader()));
+        }
+
+        List<Criteria> filtersAfterCursor = new ArrayList<>(filters);
+        if (cursorQuery.getCursor() != null && !cursorQuery.getCursor().isEmpty()) {
+            BookCursor cursor = BookCursor.decode(cursorQuery.getCursor());
+            Object id = ObjectId.isValid(cursor.id()) ? new ObjectId(cursor.id()) : cursor.id();
+            filtersAfterCursor.add(new Criteria().orOperator(
+                    Criteria.where(CREATED_DATE_TIME).lt(cursor.createdDateTime()),
+                    Criteria.where(CREATED_DATE_TIME).is(cursor.createdDateTime()).and(ID).lt(id)));
+        }
+
+        // Read one more than asked for to find out if there is a next page
+        Query query = new Query(allOf(filtersAfterCursor))
+                .with(Sort.by(Sort.Direction.DESC, CREATED_DATE_TIME, ID))
+                .limit(cursorQuery.getSize() + 1);
+        projection.accept(query);
+
+        List<T> results = mongoTemplate.query(Book.class).as(resultType).matching(query).all();
+
+        String nextCursor = null;
+        if (results.size() > cursorQuery.getSize()) {
+            results = results.subList(0, cursorQuery.getSize());
+            nextCursor = cursorOf.apply(results.getLast()).encode();
+        }
+
+        Long totalElements = cursorQuery.isIncludeTotal() ?
+                mongoTemplate.count(new Query(allOf(filters)), Book.class) : null;
+
+        return new CursorPage<>(results, nextCursor, totalElements);
+    }
+
+    private static Criteria allOf(List<Criteria> criteria) {
+        return criteria.isEmpty() ? new Criteria() : new Criteria().andOperator(criteria);
+    }
+
+    private Page<Book> findVisibleBooks(Criteria criteria, Pageable pageable, User user) {
+
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, CREATED_DATE_TIME)).with(pageable);
+        BookFieldVisibility.forUser(user).applyTo(query);
+
+        List<Book> books = mongoTemplate.find(query, Book.class);
+        books.forEach(b -> b.setPermissionsAndContentForUser(user));
+
+        return PageableExecutionUtils.getPage(
+                books,
+                pageable,
+                () -> mongoTemplate.count(new Query(criteria), Book.class));
+    }
+
+    private Page<BookSummary> findBookSummaries(Criteria criteria, Pageable pageable) {
+
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, CREATED_DATE_TIME)).with(pageable);
+        query.fields().include(BOOK_SUMMARY_FIELDS);
+
+        List<BookSummary> books = mongoTemplate.query(Book.class).as(BookSummary.class).matching(query).all();
+
+        return PageableExecutionUtils.getPage(
+                books,
+                pageable,
+                () -> mongoTemplate.count(new Query(criteria), Book.class));
+    }
 }
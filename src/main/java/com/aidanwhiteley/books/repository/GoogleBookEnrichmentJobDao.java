@@ -0,0 +1,134 @@
+package com.aidanwhiteley.books.repository;
+
+import com.aidanwhiteley.books.repository.dtos.GoogleBookEnrichmentJob;
+import com.aidanwhiteley.books.repository.dtos.GoogleBookEnrichmentJob.Status;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Maintains the googleBookEnrichmentJobs collection - the durable queue of requests to add Google Books API
+ * data to books.
+ * <p>
+ * Enqueueing and the dead letter queries are used from request threads so use the blocking driver. Claiming
+ * and completing jobs happens in the reactive enrichment pipeline so uses the reactive driver.
+ */
+@Repository
+public class GoogleBookEnrichmentJobDao {
+
+    private static final String ID = "_id";
+    private static final String BOOK_IDS = "bookIds";
+    private static final String STATUS = "status";
+    private static final String ATTEMPTS = "attempts";
+    private static final String NEXT_ATTEMPT_AT = "nextAttemptAt";
+    private static final String LAST_ERROR = "lastError";
+    private static final String CREATED_DATE_TIME = "createdDateTime";
+
+    private final MongoTemplate mongoTemplate;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public GoogleBookEnrichmentJobDao(MongoTemplate mongoTemplate, ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    /**
+     * Adds the book to the job for the Google book id, creating the job if there isn't one already.
+     * A job for the Google book id that was dead is given a fresh set of attempts.
+     */
+    public void enqueue(String bookId, String googleBookId) {
+        LocalDateTime now = LocalDateTime.now();
+
+        Update update = new Update().addToSet(BOOK_IDS, bookId).
+                setOnInsert(STATUS, Status.PENDING).
+                setOnInsert(ATTEMPTS, 0).
+                setOnInsert(NEXT_ATTEMPT_AT, now).
+                setOnInsert(CREATED_DATE_TIME, now);
+        mongoTemplate.upsert(new Query(Criteria.where(ID).is(googleBookId)), update, GoogleBookEnrichmentJob.class);
+
+        retryDeadJob(googleBookId);
+    }
+
+    /**
+     * @return The ids (i.e. Google book ids) of up to limit jobs that are due to be attempted - either pending
+     * jobs whose backoff has passed or in progress jobs that appear to have been abandoned.
+     */
+    public List<String> findDueJobIds(LocalDateTime now, int limit) {
+        Query query = new Query(dueCriteria(now)).with(Sort.by(Sort.Direction.ASC, NEXT_ATTEMPT_AT)).limit(limit);
+        query.fields().include(ID);
+        return mongoTemplate.find(query, GoogleBookEnrichmentJob.class).stream().
+                map(GoogleBookEnrichmentJob::getId).
+                toList();
+    }
+
+    /**
+     * Atomically marks the job as in progress if it is due. The returned Mono is empty if the job doesn't exist,
+     * isn't due or has already been claimed.
+     */
+    public Mono<GoogleBookEnrichmentJob> claim(String googleBookId, LocalDateTime now, LocalDateTime leaseExpiry) {
+        Query query = new Query(Criteria.where(ID).is(googleBookId).andOperator(dueCriteria(now)));
+        Update update = new Update().set(STATUS, Status.IN_PROGRESS).set(NEXT_ATTEMPT_AT, leaseExpiry);
+        return reactiveMongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                GoogleBookEnrichmentJob.class);
+    }
+
+    /**
+     * Removes the books that have been updated from the job and then removes the job if no other books
+     * were added to it while it was in progress. If other books were added, the job is made due again.
+     *
+     * @return A Mono emitting true if the job was made due again.
+     */
+    public Mono<Boolean> completed(GoogleBookEnrichmentJob job) {
+        Query byId = new Query(Criteria.where(ID).is(job.getId()));
+        Query noBooksLeft = new Query(Criteria.where(ID).is(job.getId()).and(BOOK_IDS).size(0));
+
+        return reactiveMongoTemplate.updateFirst(byId, new Update().pullAll(BOOK_IDS, job.getBookIds().toArray()),
+                        GoogleBookEnrichmentJob.class).
+                then(reactiveMongoTemplate.remove(noBooksLeft, GoogleBookEnrichmentJob.class)).
+                filter(result -> result.getDeletedCount() == 0).
+                flatMap(result -> reactiveMongoTemplate.updateFirst(byId,
+                        new Update().set(STATUS, Status.PENDING).set(ATTEMPTS, 0).set(NEXT_ATTEMPT_AT, LocalDateTime.now()),
+                        GoogleBookEnrichmentJob.class)).
+                map(result -> result.getModifiedCount() > 0).
+                defaultIfEmpty(false);
+    }
+
+    public Mono<Void> failed(GoogleBookEnrichmentJob job, int attempts, LocalDateTime nextAttemptAt, boolean dead,
+                             String error) {
+        Update update = new Update().
+                set(STATUS, dead ? Status.DEAD : Status.PENDING).
+                set(ATTEMPTS, attempts).
+                set(NEXT_ATTEMPT_AT, nextAttemptAt).
+                set(LAST_ERROR, error);
+        return reactiveMongoTemplate.updateFirst(new Query(Criteria.where(ID).is(job.getId())), update,
+                GoogleBookEnrichmentJob.class).then();
+    }
+
+    public List<GoogleBookEnrichmentJob> findDeadJobs() {
+        Query query = new Query(Criteria.where(STATUS).is(Status.DEAD)).with(Sort.by(Sort.Direction.DESC, NEXT_ATTEMPT_AT));
+        return mongoTemplate.find(query, GoogleBookEnrichmentJob.class);
+    }
+
+    /**
+     * @return true if there was a dead job for the Google book id that has now been made due again.
+     */
+    public boolean retryDeadJob(String googleBookId) {
+        Query query = new Query(Criteria.where(ID).is(googleBookId).and(STATUS).is(Status.DEAD));
+        Update update = new Update().set(STATUS, Status.PENDING).set(ATTEMPTS, 0).
+                set(NEXT_ATTEMPT_AT, LocalDateTime.now()).unset(LAST_ERROR);
+        return mongoTemplate.updateFirst(query, update, GoogleBookEnrichmentJob.class).getModifiedCount() > 0;
+    }
+
+    private static Criteria dueCriteria(LocalDateTime now) {
+        return Criteria.where(STATUS).in(Status.PENDING, Status.IN_PROGRESS).and(NEXT_ATTEMPT_AT).lte(now);
+    }
+}
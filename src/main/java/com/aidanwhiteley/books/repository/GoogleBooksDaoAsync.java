@@ -6,9 +6,12 @@ import com.aidanwhiteley.books.domain.googlebooks.VolumeInfo;
 import com.aidanwhiteley.books.util.HtmlSanitiserUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Repository;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -17,74 +20,83 @@ import reactor.core.publisher.Mono;
 import java.time.Duration;
 
 @Repository
-public class GoogleBooksDaoAsync extends GoogleBooksApiConfig {
+public class GoogleBooksDaoAsync {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GoogleBooksDaoAsync.class);
 
     private static final String BOOKS_WEB_CLIENT = "Books WebClient";
 
     private final WebClient webClient;
-    private final BookRepository bookRepository;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
     private final GoogleBooksApiConfig googleBooksApiConfig;
 
-    public GoogleBooksDaoAsync(BookRepository bookRepository, GoogleBooksApiConfig googleBooksApiConfig) {
+    public GoogleBooksDaoAsync(ReactiveMongoTemplate reactiveMongoTemplate, GoogleBooksApiConfig googleBooksApiConfig) {
         this.webClient = WebClient.builder()
                 .defaultHeader(HttpHeaders.USER_AGENT, BOOKS_WEB_CLIENT)
                 .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
                 .filter(logRequest())
                 .filter(logResponseStatus())
                 .build();
-        this.bookRepository = bookRepository;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
         this.googleBooksApiConfig = googleBooksApiConfig;
     }
 
     /**
-     * The use of the Spring 5 WebClient in this code is more out of a desire to experiment
-     * with it rather than for any performance gains.
+     * Retrieves the Google Books API data for a book and stores it against the book.
      * <p>
-     * We are calling block() on the Mono so the thread is going to be blocked until
-     * the full response from Google Books API has been received. So that will
-     * negate any of the usual non-blocking benefits of the WebClient usage.
-     * <p>
-     * We're also continuing to use the blocking Mongo driver in this method.
-     * <p>
-     * The real benefit to this method is that it is @Async and, therefore, the
-     * calling users HTTP call isn't blocked waiting while we go and get / store
-     * details from the Google Books API.
+     * Neither the calling thread nor any other thread is blocked while the Google Books API and Mongo
+     * are called - the WebClient and the reactive Mongo driver are used end to end.
      *
-     * @param book         Details of the book to update
+     * @param bookId       The id of the book to update
      * @param googleBookId The Google Books API book id to retrieve.
+     * @return A Mono emitting true if a book was updated with the Google Books data.
      */
-    @Async("threadPoolExecutor")
-    public void updateBookWithGoogleBookDetails(Book book, String googleBookId) {
-
-        LOGGER.debug("Entered updateBookWithGoogleBookDetails");
-
-        try {
-            Mono<Item> monoItem = this.webClient.
-                    get().
-                    uri(googleBooksApiConfig.getGetByIdUrl() + googleBookId + "/?" + googleBooksApiConfig.getCountryCode()).
-                    retrieve().
-                    bodyToMono(Item.class);
-            LOGGER.debug("Mono created");
-
-            Item item = monoItem.block(Duration.ofSeconds(googleBooksApiConfig.getReadTimeout()));
-            LOGGER.debug("Block completed");
-
-            // Google Books API data _should_ be safe from CSRF attacks but lets make sure before storing the
-            // description text in the database!
-            VolumeInfo vlInfo = item != null ? item.getVolumeInfo() : null;
-            if (vlInfo != null && vlInfo.getDescription() != null) {
-                vlInfo.setDescription(HtmlSanitiserUtils.allowBasicTextFormattingOnly(vlInfo.getDescription()));
-                item.setVolumeInfo(vlInfo);
-            }
+    public Mono<Boolean> updateBookWithGoogleBookDetails(String bookId, String googleBookId) {
+        return findByGoogleBookId(googleBookId).
+                flatMap(item -> addGoogleBookItemToBook(bookId, item));
+    }
 
-            bookRepository.addGoogleBookItemToBook(book.getId(), item);
-            LOGGER.debug("Google Books details added to Mongo for {}", book.getId());
+    /**
+     * @param googleBookId The Google Books API book id to retrieve.
+     * @return A Mono emitting the Google Books API data with its description sanitised ready for storing.
+     */
+    public Mono<Item> findByGoogleBookId(String googleBookId) {
+
+        return this.webClient.
+                get().
+                uri(googleBooksApiConfig.getGetByIdUrl() + googleBookId + "/?" + googleBooksApiConfig.getCountryCode()).
+                retrieve().
+                bodyToMono(Item.class).
+                timeout(Duration.ofMillis(googleBooksApiConfig.getReadTimeout())).
+                map(this::sanitiseDescription);
+    }
 
-        } catch (RuntimeException re) {
-            LOGGER.error("Error retrieving or storing Google Book details for {}", googleBookId, re);
+    private Item sanitiseDescription(Item item) {
+        // Google Books API data _should_ be safe from CSRF attacks but lets make sure before storing the
+        // description text in the database!
+        VolumeInfo vlInfo = item.getVolumeInfo();
+        if (vlInfo != null && vlInfo.getDescription() != null) {
+            vlInfo.setDescription(HtmlSanitiserUtils.allowBasicTextFormattingOnly(vlInfo.getDescription()));
+            item.setVolumeInfo(vlInfo);
         }
+        return item;
+    }
+
+    public Mono<Boolean> addGoogleBookItemToBook(String bookId, Item item) {
+        Query query = new Query(Criteria.where("id").is(bookId));
+        Update update = new Update();
+        update.set("googleBookDetails", item);
+
+        return reactiveMongoTemplate.updateFirst(query, update, Book.class).
+                map(result -> {
+                    if (result.getMatchedCount() != 1) {
+                        LOGGER.error("Expected 1 update for googleBookDetails in a Book for bookId {} but saw {}",
+                                bookId, result.getMatchedCount());
+                        return false;
+                    }
+                    LOGGER.debug("Google Books details added to Mongo for {}", bookId);
+                    return true;
+                });
     }
 
     private ExchangeFilterFunction logRequest() {
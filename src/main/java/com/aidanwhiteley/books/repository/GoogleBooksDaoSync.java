@@ -4,17 +4,18 @@ import com.aidanwhiteley.books.domain.googlebooks.BookSearchResult;
 import com.aidanwhiteley.books.domain.googlebooks.Item;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.stereotype.Repository;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 
 import static com.aidanwhiteley.books.util.ClientInputSanitiserUtils.isValidTitleOrAuthor;
 import static com.aidanwhiteley.books.util.ClientInputSanitiserUtils.sanitiseGoogleBookId;
+import static com.aidanwhiteley.books.util.GoogleBooksClientConfig.OPERATION_ATTRIBUTE;
 import static com.aidanwhiteley.books.util.LogDetaint.logMessageDetaint;
 
 @Repository
@@ -22,16 +23,13 @@ public class GoogleBooksDaoSync {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GoogleBooksDaoSync.class);
     private final GoogleBooksApiConfig googleBooksApiConfig;
-    private final RestTemplate googleBooksRestTemplate;
+    private final RestClient googleBooksRestClient;
 
-    public GoogleBooksDaoSync(GoogleBooksApiConfig googleBooksApiConfig) {
+    public GoogleBooksDaoSync(GoogleBooksApiConfig googleBooksApiConfig, RestClient googleBooksRestClient) {
         this.googleBooksApiConfig = googleBooksApiConfig;
-        this.googleBooksRestTemplate = new RestTemplate();
+        this.googleBooksRestClient = googleBooksRestClient;
     }
 
-    // Commenting out the previous init() method to ease the migration to spring Boot 4 after which we'll convert
-    // to using RestClient anyway
-
     public BookSearchResult searchGoogleBooksByTitleAndAuthor(String title, String author) {
 
         if (!isValidTitleOrAuthor(title) || !isValidTitleOrAuthor(author)) {
@@ -46,9 +44,6 @@ public class GoogleBooksDaoSync {
         String encodedTitle = URLEncoder.encode(title, StandardCharsets.UTF_8);
         String encodedAuthor = URLEncoder.encode(author, StandardCharsets.UTF_8);
 
-        googleBooksRestTemplate.getMessageConverters().addFirst(
-                new StringHttpMessageConverter(StandardCharsets.UTF_8));
-
         final String searchString = googleBooksApiConfig.getSearchUrl() + "+intitle:" + encodedTitle +
                 "+inauthor:" + encodedAuthor + "&" + googleBooksApiConfig.getCountryCode() +
                 "&" + googleBooksApiConfig.getMaxResults();
@@ -57,7 +52,12 @@ public class GoogleBooksDaoSync {
             LOGGER.info("Google Books API called with API called: {}", searchString);
         }
 
-        BookSearchResult result = googleBooksRestTemplate.getForObject(searchString, BookSearchResult.class);
+        // The search string is already encoded so pass it as a URI to stop it being encoded again
+        BookSearchResult result = googleBooksRestClient.get()
+                .uri(URI.create(searchString))
+                .attribute(OPERATION_ATTRIBUTE, "searchByTitleAndAuthor")
+                .retrieve()
+                .body(BookSearchResult.class);
 
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Result of Google Books API call: {}", result);
@@ -68,11 +68,13 @@ public class GoogleBooksDaoSync {
 
     public Item searchGoogleBooksByGoogleBookId(String id) {
 
-        googleBooksRestTemplate.getMessageConverters().addFirst(new StringHttpMessageConverter(StandardCharsets.UTF_8));
         try {
-            return googleBooksRestTemplate.getForObject(googleBooksApiConfig.getGetByIdUrl() +
-                    sanitiseGoogleBookId(id) + "/?" +
-                    googleBooksApiConfig.getCountryCode(), Item.class);
+            return googleBooksRestClient.get()
+                    .uri(URI.create(googleBooksApiConfig.getGetByIdUrl() + sanitiseGoogleBookId(id) + "/?" +
+                            googleBooksApiConfig.getCountryCode()))
+                    .attribute(OPERATION_ATTRIBUTE, "getByGoogleBookId")
+                    .retrieve()
+                    .body(Item.class);
         } catch (HttpStatusCodeException e) {
             String errorpayload = e.getResponseBodyAsString();
             LOGGER.error("Error calling Google Books API: {}", errorpayload, e);
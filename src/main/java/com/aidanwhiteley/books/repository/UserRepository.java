@@ -1,13 +1,28 @@
 package com.aidanwhiteley.books.repository;
 
 import com.aidanwhiteley.books.domain.User;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.util.List;
 
+import static com.aidanwhiteley.books.util.CacheConfig.AUDITOR_OWNERS_CACHE;
+import static com.aidanwhiteley.books.util.CacheConfig.RESOLVED_USERS_CACHE;
+
 public interface UserRepository extends MongoRepository<User, String>, UserRepositoryCustomMethods {
 
     List<User> findAllByAuthenticationServiceIdAndAuthProvider(String authenticationServiceId, String authenticationProvider);
 
     List<User> findAllByAdminEmailedAboutSignupIsFalse();
+
+    /*
+     * Users are rarely updated or deleted so any change simply empties the caches of user data.
+     */
+    @Override
+    @CacheEvict(cacheNames = {AUDITOR_OWNERS_CACHE, RESOLVED_USERS_CACHE}, allEntries = true)
+    <S extends User> S save(S user);
+
+    @Override
+    @CacheEvict(cacheNames = {AUDITOR_OWNERS_CACHE, RESOLVED_USERS_CACHE}, allEntries = true)
+    void deleteById(String id);
 }
@@ -5,6 +5,7 @@ import com.aidanwhiteley.books.domain.User;
 import com.mongodb.client.result.UpdateResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -14,6 +15,9 @@ import org.springframework.stereotype.Repository;
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.aidanwhiteley.books.util.CacheConfig.AUDITOR_OWNERS_CACHE;
+import static com.aidanwhiteley.books.util.CacheConfig.RESOLVED_USERS_CACHE;
+
 @Repository
 public class UserRepositoryImpl implements UserRepositoryCustomMethods {
 
@@ -26,6 +30,7 @@ public class UserRepositoryImpl implements UserRepositoryCustomMethods {
     }
 
     @Override
+    @CacheEvict(cacheNames = {AUDITOR_OWNERS_CACHE, RESOLVED_USERS_CACHE}, allEntries = true)
     public long updateUserRoles(ClientRoles clientRoles) {
 
         List<User.Role> roles = new ArrayList<>();
@@ -0,0 +1,36 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * The position of a book in the "most recently created first" ordering used when paging through
+ * books by cursor (i.e. keyset / seek pagination) rather than by page number.
+ * <p>
+ * The createdDateTime alone isn't unique so the book id is used to break ties. Clients should treat
+ * the encoded form as opaque.
+ */
+public record BookCursor(LocalDateTime createdDateTime, String id) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String cursor = createdDateTime + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static BookCursor decode(String encodedCursor) {
+        try {
+            String cursor = new String(Base64.getUrlDecoder().decode(encodedCursor), StandardCharsets.UTF_8);
+            int separator = cursor.indexOf(SEPARATOR);
+            if (separator < 1 || separator == cursor.length() - 1) {
+                throw new IllegalArgumentException("Invalid cursor supplied");
+            }
+            return new BookCursor(LocalDateTime.parse(cursor.substring(0, separator)), cursor.substring(separator + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor supplied", e);
+        }
+    }
+}
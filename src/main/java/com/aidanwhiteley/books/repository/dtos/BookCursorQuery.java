@@ -0,0 +1,26 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import com.aidanwhiteley.books.domain.Book;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The parameters for retrieving a CursorPage of books, most recently created first.
+ * <p>
+ * A null or empty cursor means the first page. At most one of author, genre, rating
+ * and reader would normally be set - any that are set must all match.
+ */
+@Getter
+@Builder
+@ToString
+public class BookCursorQuery {
+
+    private String cursor;
+    private int size;
+    private boolean includeTotal;
+    private String author;
+    private String genre;
+    private Book.Rating rating;
+    private String reader;
+}
@@ -0,0 +1,41 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A materialised count of the number of books that have a given value for one of the "facets"
+ * used to browse the books - genre, author, rating and reader (i.e. the full name of the book's creator).
+ * <p>
+ * The id is derived from the facet and value so that the counts can be atomically incremented and
+ * decremented with upserts.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@Document(collection = "bookFacetCounts")
+public class BookFacetCount {
+
+    public enum Facet {
+        GENRE, AUTHOR, RATING, READER
+    }
+
+    @Id
+    private String id;
+    private Facet facet;
+    private String value;
+    private long countOfBooks;
+
+    public BookFacetCount(Facet facet, String value, long countOfBooks) {
+        this(idFor(facet, value), facet, value, countOfBooks);
+    }
+
+    public static String idFor(Facet facet, String value) {
+        return facet.name() + ":" + value;
+    }
+}
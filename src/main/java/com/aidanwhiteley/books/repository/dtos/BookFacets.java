@@ -0,0 +1,27 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import com.aidanwhiteley.books.domain.Book;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The values of a single book that are counted in the bookFacetCounts collection. Captured before a book
+ * is updated so that the counts for the old values can be decremented.
+ */
+public record BookFacets(String genre, String author, Book.Rating rating, String reader) {
+
+    public static BookFacets of(Book book) {
+        String reader = book.getCreatedBy() == null ? null : book.getCreatedBy().getFullName();
+        return new BookFacets(book.getGenre(), book.getAuthor(), book.getRating(), reader);
+    }
+
+    public Map<BookFacetCount.Facet, String> asMap() {
+        Map<BookFacetCount.Facet, String> values = new EnumMap<>(BookFacetCount.Facet.class);
+        values.put(BookFacetCount.Facet.GENRE, genre);
+        values.put(BookFacetCount.Facet.AUTHOR, author);
+        values.put(BookFacetCount.Facet.RATING, rating == null ? null : rating.name());
+        values.put(BookFacetCount.Facet.READER, reader);
+        return values;
+    }
+}
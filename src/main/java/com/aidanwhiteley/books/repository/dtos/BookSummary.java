@@ -0,0 +1,44 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.domain.googlebooks.ImageLinks;
+import com.aidanwhiteley.books.domain.googlebooks.Item;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * A cut down, read only view of a Book for use in lists of books (the swiper carousel and the
+ * tables of books on the recent / find / search pages).
+ * <p>
+ * It is populated by a projection query so that the review summary, the comments and the bulk of the
+ * Google Books data are never read from Mongo. Only the image links of the Google Books data are
+ * populated in googleBookDetails.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookSummary {
+
+    private String id;
+    private String title;
+    private String author;
+    private String genre;
+    private Book.Rating rating;
+    private LocalDateTime createdDateTime;
+    private String googleBookId;
+    private Item googleBookDetails;
+
+    public boolean hasThumbnailImage() {
+        if (googleBookId == null || googleBookId.isBlank() || googleBookDetails == null ||
+                googleBookDetails.getVolumeInfo() == null) {
+            return false;
+        }
+        ImageLinks imageLinks = googleBookDetails.getVolumeInfo().getImageLinks();
+        return imageLinks != null && imageLinks.getThumbnail() != null && !imageLinks.getThumbnail().isBlank();
+    }
+}
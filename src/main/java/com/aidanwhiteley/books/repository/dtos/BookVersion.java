@@ -0,0 +1,39 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * The parts of a Book's state that change whenever what is displayed for the book changes - used to answer
+ * conditional GETs of a single book without reading (or rendering) the whole book.
+ * <p>
+ * The lastModifiedDateTime alone isn't enough as adding or removing comments and adding the Google Books data
+ * are targeted updates that don't touch the auditing fields.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookVersion {
+
+    private String id;
+    private LocalDateTime lastModifiedDateTime;
+    private long commentCount;
+    private LocalDateTime commentsLastModifiedDateTime;
+    private String googleBookDetailsSelfLink;
+
+    /**
+     * @return The latest of the lastModifiedDateTime and the time a comment was last added or removed.
+     */
+    public LocalDateTime getLastChangedDateTime() {
+        if (lastModifiedDateTime == null) {
+            return commentsLastModifiedDateTime;
+        }
+        if (commentsLastModifiedDateTime == null || lastModifiedDateTime.isAfter(commentsLastModifiedDateTime)) {
+            return lastModifiedDateTime;
+        }
+        return commentsLastModifiedDateTime;
+    }
+}
@@ -0,0 +1,27 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * A page of results retrieved by cursor rather than by page number.
+ * <p>
+ * The nextCursor is null when there are no more results. The totalElements is null unless
+ * it was asked for - working it out needs an extra count query that infinite scrolling clients don't need.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class CursorPage<T> {
+
+    private final List<T> content;
+    private final String nextCursor;
+    private final Long totalElements;
+
+    public boolean isLast() {
+        return nextCursor == null;
+    }
+}
@@ -0,0 +1,40 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A queued request to add the Google Books API data for a Google book id to one or more books.
+ * <p>
+ * The id is the Google book id so that there is only ever one job (and one call to the Google Books API)
+ * per Google book, however many reviews are waiting for its data. A job that keeps failing is eventually
+ * left in the DEAD status so that it can be inspected and retried.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@Document(collection = "googleBookEnrichmentJobs")
+public class GoogleBookEnrichmentJob {
+
+    public enum Status {
+        PENDING, IN_PROGRESS, DEAD
+    }
+
+    @Id
+    private String id;
+    private List<String> bookIds;
+    private Status status;
+    private int attempts;
+    // For an IN_PROGRESS job this is when the job is assumed to have been abandoned (e.g. by a restart)
+    private LocalDateTime nextAttemptAt;
+    private String lastError;
+    private LocalDateTime createdDateTime;
+}
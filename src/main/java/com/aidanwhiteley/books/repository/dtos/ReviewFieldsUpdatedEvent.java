@@ -0,0 +1,11 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import com.aidanwhiteley.books.domain.Book;
+
+/**
+ * Published when the review fields of a book have been changed by a targeted update - which, unlike a save of
+ * the whole book, doesn't raise any Spring Data Mongo lifecycle events. The facets are as they were before the
+ * update.
+ */
+public record ReviewFieldsUpdatedEvent(Book book, BookFacets facetsBeforeUpdate) {
+}
@@ -0,0 +1,10 @@
+package com.aidanwhiteley.books.repository.dtos;
+
+import com.aidanwhiteley.books.domain.Book;
+
+/**
+ * The result of a targeted update of a book's review fields. The book holds just the review and facet fields
+ * as they are after the update. The facets and Google book id are as they were before the update.
+ */
+public record UpdatedBook(Book book, BookFacets facetsBeforeUpdate, String googleBookIdBeforeUpdate) {
+}
@@ -0,0 +1,82 @@
+package com.aidanwhiteley.books.service;
+
+import com.aidanwhiteley.books.repository.BookFacetCountsDao;
+import com.aidanwhiteley.books.repository.dtos.BookFacetCount;
+import com.aidanwhiteley.books.service.dtos.FacetCountDrift;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.aidanwhiteley.books.util.LogDetaint.logMessageDetaint;
+
+/**
+ * Rebuilds the counts in the bookFacetCounts collection from the book collection and reports any
+ * differences from the incrementally maintained counts. Runs at startup (so that the counts exist
+ * after the collection is first created), on a schedule and after the development data is reloaded.
+ */
+@Service
+public class BookFacetCountsReconciliationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookFacetCountsReconciliationService.class);
+
+    private final BookFacetCountsDao bookFacetCountsDao;
+
+    public BookFacetCountsReconciliationService(BookFacetCountsDao bookFacetCountsDao) {
+        this.bookFacetCountsDao = bookFacetCountsDao;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${books.facetCounts.reconciliation.cron}")
+    public void scheduledReconciliation() {
+        List<FacetCountDrift> drifts = reconcile();
+        LOGGER.info("Reconciled book facet counts - corrected {} drifted counts", drifts.size());
+    }
+
+    public List<FacetCountDrift> reconcile() {
+        Map<String, BookFacetCount> actual = bookFacetCountsDao.calculateFacetCountsFromBooks().stream()
+                .collect(Collectors.toMap(BookFacetCount::getId, Function.identity()));
+        Map<String, BookFacetCount> stored = bookFacetCountsDao.findAll().stream()
+                .collect(Collectors.toMap(BookFacetCount::getId, Function.identity()));
+
+        List<FacetCountDrift> drifts = new ArrayList<>();
+        List<BookFacetCount> countsToSave = new ArrayList<>();
+        List<String> idsToRemove = new ArrayList<>();
+
+        actual.values().forEach(a -> {
+            BookFacetCount s = stored.get(a.getId());
+            long storedCount = s == null ? 0 : s.getCountOfBooks();
+            if (storedCount != a.getCountOfBooks()) {
+                drifts.add(new FacetCountDrift(a.getFacet(), a.getValue(), storedCount, a.getCountOfBooks()));
+                countsToSave.add(a);
+            }
+        });
+
+        stored.values().stream().filter(s -> !actual.containsKey(s.getId())).forEach(s -> {
+            if (s.getCountOfBooks() != 0) {
+                drifts.add(new FacetCountDrift(s.getFacet(), s.getValue(), s.getCountOfBooks(), 0));
+            }
+            idsToRemove.add(s.getId());
+        });
+
+        if (!countsToSave.isEmpty() || !idsToRemove.isEmpty()) {
+            bookFacetCountsDao.replaceCounts(countsToSave, idsToRemove);
+        }
+
+        if (stored.isEmpty()) {
+            LOGGER.info("Built {} book facet counts from the book collection", countsToSave.size());
+        } else {
+            drifts.forEach(d -> LOGGER.warn("Book facet count drift: {}", logMessageDetaint(d)));
+        }
+
+        return drifts;
+    }
+}
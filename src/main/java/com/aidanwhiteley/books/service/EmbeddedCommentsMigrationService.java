@@ -0,0 +1,33 @@
+package com.aidanwhiteley.books.service;
+
+import com.aidanwhiteley.books.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Comments used to be embedded in the book they were about. At startup, moves any comments still stored that
+ * way (e.g. in a database last used by an earlier version or in reloaded development data) to the comment
+ * collection. Books without embedded comments are left untouched so this is a no-op once the data is migrated.
+ */
+@Service
+public class EmbeddedCommentsMigrationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedCommentsMigrationService.class);
+
+    private final BookRepository bookRepository;
+
+    public EmbeddedCommentsMigrationService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateEmbeddedComments() {
+        int books = bookRepository.moveEmbeddedCommentsToCommentCollection();
+        if (books > 0) {
+            LOGGER.info("Moved the embedded comments of {} books to the comment collection", books);
+        }
+    }
+}
@@ -1,31 +1,50 @@
 package com.aidanwhiteley.books.service;
 
+import com.aidanwhiteley.books.domain.Book;
 import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.repository.BookRepository;
 import com.aidanwhiteley.books.util.GoodReadsBookExport;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 @Service
 public class GoodReadsExportService {
+
+    private static final String ROW_SEPARATOR = "\r\n";
+
     private final BookRepository bookRepository;
 
     public GoodReadsExportService(BookRepository bookRepository) {
         this.bookRepository = bookRepository;
     }
 
-    public List<String> getExportInGoodReadsFormat(User user) {
-        var output = new ArrayList<String>();
-        output.add(GoodReadsBookExport.goodReadsExportHeaderRow());
-
-        // TODO - with small volumes of book reviews this filter at the service tier is fine but
-        // should be moved to being a JPA "example" query at some point
-        var books = user.getHighestRole().getShortName().equals("ADMIN") ?
-            bookRepository.findAll().stream().toList() :
-                bookRepository.findAll().stream().filter(s -> s.isOwner(user)).toList();
-        output.addAll(books.stream().map(GoodReadsBookExport::goodReadsExportAsCsv).toList());
-        return output;
+    /**
+     * Writes a Goodreads format export of the user's book reviews (or of all book reviews for an admin).
+     * <p>
+     * The books are read from a Mongo cursor and written a row at a time so the memory used doesn't
+     * depend on the number of books being exported.
+     *
+     * @return The number of books exported
+     */
+    public long writeExportInGoodReadsFormat(User user, Writer writer) throws IOException {
+        writer.write(GoodReadsBookExport.goodReadsExportHeaderRow());
+
+        User owner = user.getHighestRole() == User.Role.ROLE_ADMIN ? null : user;
+        long rows = 0;
+        try (Stream<Book> books = bookRepository.streamBooksForGoodReadsExport(owner)) {
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                writer.write(ROW_SEPARATOR);
+                writer.write(GoodReadsBookExport.goodReadsExportAsCsv(iterator.next()));
+                rows++;
+            }
+        }
+
+        writer.flush();
+        return rows;
     }
 }
@@ -0,0 +1,159 @@
+package com.aidanwhiteley.books.service;
+
+import com.aidanwhiteley.books.repository.GoogleBookEnrichmentJobDao;
+import com.aidanwhiteley.books.repository.GoogleBooksDaoAsync;
+import com.aidanwhiteley.books.repository.dtos.GoogleBookEnrichmentJob;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.aidanwhiteley.books.util.LogDetaint.logMessageDetaint;
+
+/**
+ * Adds Google Books API data to books in the background so that creating or updating a review never waits
+ * on the Google Books API.
+ * <p>
+ * Requests are first stored as jobs in Mongo so that they survive restarts and API failures. The ids of jobs
+ * that are due are then passed to a reactive pipeline that works on at most
+ * books.google.books.enrichment.maxConcurrency jobs at a time. If the pipeline's bounded buffer is full, the job
+ * simply waits in Mongo for the next poll. Failed jobs are retried with exponential backoff until
+ * books.google.books.enrichment.maxAttempts is reached, after which they are left as dead jobs.
+ */
+@Service
+public class GoogleBookEnrichmentService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GoogleBookEnrichmentService.class);
+
+    private final GoogleBookEnrichmentJobDao googleBookEnrichmentJobDao;
+    private final GoogleBooksDaoAsync googleBooksDaoAsync;
+    private final Sinks.Many<String> dueJobs;
+    private final Disposable enrichmentPipeline;
+    private final int queueCapacity;
+
+    @Value("${books.google.books.enrichment.maxAttempts}")
+    private int maxAttempts;
+
+    @Value("${books.google.books.enrichment.initialBackoffSeconds}")
+    private long initialBackoffSeconds;
+
+    @Value("${books.google.books.enrichment.maxBackoffSeconds}")
+    private long maxBackoffSeconds;
+
+    @Value("${books.google.books.enrichment.leaseSeconds}")
+    private long leaseSeconds;
+
+    public GoogleBookEnrichmentService(GoogleBookEnrichmentJobDao googleBookEnrichmentJobDao,
+                                       GoogleBooksDaoAsync googleBooksDaoAsync,
+                                       @Value("${books.google.books.enrichment.maxConcurrency}") int maxConcurrency,
+                                       @Value("${books.google.books.enrichment.queueCapacity}") int queueCapacity) {
+        this.googleBookEnrichmentJobDao = googleBookEnrichmentJobDao;
+        this.googleBooksDaoAsync = googleBooksDaoAsync;
+        this.queueCapacity = queueCapacity;
+
+        // flatMap only requests maxConcurrency items at a time from the sink so any burst of requests
+        // waits in the sink's bounded buffer (or in Mongo) rather than on a thread.
+        this.dueJobs = Sinks.many().unicast().onBackpressureBuffer(Queues.<String>get(queueCapacity).get());
+        this.enrichmentPipeline = dueJobs.asFlux()
+                .flatMap(googleBookId -> processJob(googleBookId)
+                                .onErrorResume(e -> {
+                                    LOGGER.error("Error processing the Google Books enrichment job for {}",
+                                            logMessageDetaint(googleBookId), e);
+                                    return Mono.empty();
+                                }),
+                        maxConcurrency)
+                .subscribe();
+    }
+
+    /**
+     * Queues the retrieval of the Google Books API data for a Google book id and its storage against the book.
+     */
+    public void requestGoogleBookDetails(String bookId, String googleBookId) {
+        googleBookEnrichmentJobDao.enqueue(bookId, googleBookId);
+        signalJobDue(googleBookId);
+    }
+
+    public List<GoogleBookEnrichmentJob> getDeadJobs() {
+        return googleBookEnrichmentJobDao.findDeadJobs();
+    }
+
+    /**
+     * @return true if there was a dead job for the Google book id that will now be retried.
+     */
+    public boolean retryDeadJob(String googleBookId) {
+        boolean retried = googleBookEnrichmentJobDao.retryDeadJob(googleBookId);
+        if (retried) {
+            signalJobDue(googleBookId);
+        }
+        return retried;
+    }
+
+    /**
+     * Picks up jobs whose backoff has passed, jobs abandoned by a restart and jobs that didn't fit in the
+     * pipeline's buffer when they were requested.
+     */
+    @Scheduled(fixedDelayString = "${books.google.books.enrichment.pollIntervalMillis}")
+    public void pollForDueJobs() {
+        googleBookEnrichmentJobDao.findDueJobIds(LocalDateTime.now(), queueCapacity).forEach(this::signalJobDue);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        enrichmentPipeline.dispose();
+    }
+
+    private synchronized void signalJobDue(String googleBookId) {
+        // The sink only supports one emitting thread at a time - hence this method being synchronized.
+        // A failure to emit loses nothing as the job is still in Mongo for the next poll to find.
+        Sinks.EmitResult result = dueJobs.tryEmitNext(googleBookId);
+        if (result.isFailure()) {
+            LOGGER.warn("Google Books enrichment job for {} left for the next poll - result was {}",
+                    logMessageDetaint(googleBookId), result);
+        }
+    }
+
+    private Mono<Void> processJob(String googleBookId) {
+        LocalDateTime now = LocalDateTime.now();
+
+        // Claiming the job is atomic so a job that has been signalled more than once is only processed once
+        return googleBookEnrichmentJobDao.claim(googleBookId, now, now.plusSeconds(leaseSeconds))
+                .flatMap(job -> googleBooksDaoAsync.findByGoogleBookId(googleBookId)
+                        .flatMapMany(item -> Flux.fromIterable(job.getBookIds())
+                                .concatMap(bookId -> googleBooksDaoAsync.addGoogleBookItemToBook(bookId, item)))
+                        .then(googleBookEnrichmentJobDao.completed(job))
+                        .doOnNext(moreBooksWaiting -> {
+                            if (Boolean.TRUE.equals(moreBooksWaiting)) {
+                                signalJobDue(googleBookId);
+                            }
+                        })
+                        .then()
+                        .onErrorResume(e -> jobFailed(job, e)));
+    }
+
+    private Mono<Void> jobFailed(GoogleBookEnrichmentJob job, Throwable e) {
+        int attempts = job.getAttempts() + 1;
+        boolean dead = attempts >= maxAttempts;
+        long backoffSeconds = Math.min(maxBackoffSeconds, initialBackoffSeconds << Math.min(attempts - 1, 30));
+
+        if (dead) {
+            LOGGER.error("Google Books enrichment job for {} failed after {} attempts and will not be retried",
+                    logMessageDetaint(job.getId()), attempts, e);
+        } else {
+            LOGGER.warn("Google Books enrichment job for {} failed on attempt {} - retrying in {} seconds: {}",
+                    logMessageDetaint(job.getId()), attempts, backoffSeconds, e.toString());
+        }
+
+        return googleBookEnrichmentJobDao.failed(job, attempts, LocalDateTime.now().plusSeconds(backoffSeconds),
+                dead, e.toString());
+    }
+}
@@ -14,55 +14,83 @@ import com.aidanwhiteley.books.util.LogDetaint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import static com.aidanwhiteley.books.util.CacheConfig.GOOGLE_BOOK_SEARCH_CACHE;
 
 @Service
 public class GoogleBookSearchService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GoogleBookSearchService.class);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
 
     private final GoogleBookSearchRepository googleBookSearchRepository;
     private final GoogleBooksDaoSync googleBooksDaoSync;
     private final BookRepository bookRepository;
+    private final GoogleBookEnrichmentService googleBookEnrichmentService;
+    private final Cache googleBookSearchCache;
+    private final ConcurrentMap<Object, CompletableFuture<GoogleBookSearch>> inFlightSearches = new ConcurrentHashMap<>();
 
     @Value("${books.google.books.cacheTimeoutMinutes}")
     private int cacheTimeoutMinutes;
 
     public GoogleBookSearchService(GoogleBookSearchRepository googleBookSearchRepository,
                                    GoogleBooksDaoSync googleBooksDaoSync,
-                                   BookRepository bookRepository) {
+                                   BookRepository bookRepository,
+                                   GoogleBookEnrichmentService googleBookEnrichmentService,
+                                   CacheManager cacheManager) {
         this.googleBookSearchRepository = googleBookSearchRepository;
         this.googleBooksDaoSync = googleBooksDaoSync;
         this.bookRepository =bookRepository;
+        this.googleBookEnrichmentService = googleBookEnrichmentService;
+        this.googleBookSearchCache = Objects.requireNonNull(cacheManager.getCache(GOOGLE_BOOK_SEARCH_CACHE));
     }
 
     public GoogleBookSearchResult getGoogleBooks(String title, String author, int index) {
 
-        List<GoogleBookSearch> googleBookSearchList = googleBookSearchRepository.findAllByTitleAndAuthor(title, author);
+        Optional<GoogleBookSearch> googleBookSearch = findCachedGoogleBookSearch(title, author);
 
-        if (!googleBookSearchList.isEmpty()) {
-            return getGoogleBookSearchResultFromCache(title, author, index, googleBookSearchList);
+        if (googleBookSearch.isPresent()) {
+            return getGoogleBookSearchResultFromCache(title, author, index, googleBookSearch.get());
         } else {
             return getGoogleBookSearchResultFromAPI(title, author, index);
         }
     }
 
+    /**
+     * Adds the Google Books data for a book if it is already in the local Google books search cache (which it
+     * will be if the user has just been paging through the search results). Otherwise, the data is requested
+     * in the background so that the caller isn't kept waiting on the Google Books API.
+     */
     public Book updateBookWithGoogleBookDetails(Book aBook, String title, String author, int index) {
 
-        GoogleBookSearchResult googleBookSearchResult = getGoogleBooks(title, author, index);
-        Item item = googleBookSearchResult.getItem();
+        Optional<Item> cachedItem = getGoogleBookFromCache(title, author, index).
+                filter(anItem -> aBook.getGoogleBookId() == null || aBook.getGoogleBookId().isEmpty() ||
+                        aBook.getGoogleBookId().equals(anItem.getId()));
 
-        // Google Books API data _should_ be safe from CSRF attacks but lets make sure before storing the
-        // description text in the database!
-        VolumeInfo vlInfo = item.getVolumeInfo();
-        if (vlInfo != null && vlInfo.getDescription() != null) {
-            vlInfo.setDescription(HtmlSanitiserUtils.allowBasicTextFormattingOnly(vlInfo.getDescription()));
-            item.setVolumeInfo(vlInfo);
+        if (cachedItem.isEmpty()) {
+            if (aBook.getGoogleBookId() != null && !aBook.getGoogleBookId().isEmpty()) {
+                googleBookEnrichmentService.requestGoogleBookDetails(aBook.getId(), aBook.getGoogleBookId());
+            }
+            return aBook;
         }
 
+        // The cached item's description has already been sanitised - see sanitiseDescriptions
+        Item item = cachedItem.get();
         bookRepository.addGoogleBookItemToBook(aBook.getId(), item);
         LOGGER.debug("Google Books details added to Mongo for {}", aBook.getId());
 
@@ -70,17 +98,58 @@ public class GoogleBookSearchService {
         return aBook;
     }
 
+    private Optional<Item> getGoogleBookFromCache(String title, String author, int index) {
+        Optional<GoogleBookSearch> googleBookSearch = findCachedGoogleBookSearch(title, author);
+        if (googleBookSearch.isEmpty() || index < 0) {
+            return Optional.empty();
+        }
+
+        List<Item> items = googleBookSearch.get().getBookSearchResult().getItems();
+        return index < items.size() ? Optional.of(items.get(index)) : Optional.empty();
+    }
+
+    /**
+     * Checks the in heap cache and then the Mongo cache of Google Books searches. Paging through the results
+     * of a search therefore only reads from Mongo for the first page.
+     */
+    private Optional<GoogleBookSearch> findCachedGoogleBookSearch(String title, String author) {
+        Object cacheKey = googleBookSearchCacheKey(title, author);
+        GoogleBookSearch googleBookSearch = googleBookSearchCache.get(cacheKey, GoogleBookSearch.class);
+        if (googleBookSearch != null) {
+            return Optional.of(googleBookSearch);
+        }
+
+        // A unique index means that there should only be one entry
+        List<GoogleBookSearch> googleBookSearchList = googleBookSearchRepository.findAllByTitleAndAuthor(title, author);
+        if (googleBookSearchList.isEmpty()) {
+            return Optional.empty();
+        }
+
+        googleBookSearch = googleBookSearchList.getFirst();
+        sanitiseDescriptions(googleBookSearch.getBookSearchResult());
+        googleBookSearchCache.put(cacheKey, googleBookSearch);
+        return Optional.of(googleBookSearch);
+    }
+
+    /**
+     * Searches that differ only by case or spacing share the same in heap cache entry.
+     */
+    private static Object googleBookSearchCacheKey(String title, String author) {
+        return new GoogleBookSearchCacheKey(normalise(title), normalise(author));
+    }
+
+    private static String normalise(String text) {
+        return text == null ? "" : WHITESPACE.matcher(text.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
 
     private GoogleBookSearchResult getGoogleBookSearchResultFromCache(String title, String author, int index,
-                                                                      List<GoogleBookSearch> googleBookSearchList) {
+                                                                      GoogleBookSearch googleBookSearch) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Using Google books search cache for title {}, author {} and index {} ",
                     LogDetaint.logMessageDetaint(title),
                     LogDetaint.logMessageDetaint(author),
                     LogDetaint.logMessageDetaint(index));
         }
-        // A unique index means that there should only be one entry
-        GoogleBookSearch googleBookSearch = googleBookSearchList.getFirst();
         Item anItem = googleBookSearch.getBookSearchResult().getItems().get(index);
         boolean hasMore = index < googleBookSearch.getBookSearchResult().getItems().size() - 1;
         boolean hasPrevious = index > 0;
@@ -100,17 +169,9 @@ public class GoogleBookSearchService {
                     "Google books search cache is too low at {} minutes", index, cacheTimeoutMinutes);
         }
 
-        BookSearchResult result = googleBooksDaoSync.searchGoogleBooksByTitleAndAuthor(title, author);
-        if (result != null && result.getItems() != null && !result.getItems().isEmpty()) {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Inserting an entry into the Google books search cache for title {}, author {} and index {} ",
-                        LogDetaint.logMessageDetaint(title),
-                        LogDetaint.logMessageDetaint(author),
-                        LogDetaint.logMessageDetaint(index));
-            }
-            googleBookSearchRepository.insert(
-                    new GoogleBookSearch(title, author, result, LocalDateTime.now().plusMinutes(cacheTimeoutMinutes)));
-
+        GoogleBookSearch googleBookSearch = searchGoogleBooksOnce(title, author);
+        if (googleBookSearch != null) {
+            BookSearchResult result = googleBookSearch.getBookSearchResult();
             Item anItem = index < result.getItems().size() ? result.getItems().get(index) :
                     result.getItems().getLast();
             boolean hasMore = index < result.getItems().size() - 1;
@@ -126,4 +187,86 @@ public class GoogleBookSearchService {
             return new GoogleBookSearchResult(null, index, false, false, false);
         }
     }
+
+    /**
+     * Concurrent searches for the same title and author (e.g. from a double submitted form) share a single call
+     * to the Google Books API and a single insert into the Mongo cache.
+     *
+     * @return The cached search or null if the Google Books API found no matching books.
+     */
+    private GoogleBookSearch searchGoogleBooksOnce(String title, String author) {
+        Object cacheKey = googleBookSearchCacheKey(title, author);
+        CompletableFuture<GoogleBookSearch> ourSearch = new CompletableFuture<>();
+        CompletableFuture<GoogleBookSearch> inFlightSearch = inFlightSearches.putIfAbsent(cacheKey, ourSearch);
+
+        if (inFlightSearch != null) {
+            LOGGER.debug("Waiting for an in flight Google books API search");
+            try {
+                return inFlightSearch.join();
+            } catch (CompletionException ce) {
+                throw ce.getCause() instanceof RuntimeException re ? re : ce;
+            }
+        }
+
+        try {
+            // Another search may have completed between our cache check and becoming the in flight search
+            GoogleBookSearch googleBookSearch = googleBookSearchCache.get(cacheKey, GoogleBookSearch.class);
+            if (googleBookSearch == null) {
+                googleBookSearch = searchAndCacheGoogleBooks(title, author, cacheKey);
+            }
+            ourSearch.complete(googleBookSearch);
+            return googleBookSearch;
+        } catch (RuntimeException re) {
+            ourSearch.completeExceptionally(re);
+            throw re;
+        } finally {
+            inFlightSearches.remove(cacheKey, ourSearch);
+        }
+    }
+
+    private GoogleBookSearch searchAndCacheGoogleBooks(String title, String author, Object cacheKey) {
+        BookSearchResult result = googleBooksDaoSync.searchGoogleBooksByTitleAndAuthor(title, author);
+        if (result == null || result.getItems() == null || result.getItems().isEmpty()) {
+            return null;
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Inserting an entry into the Google books search cache for title {} and author {}",
+                    LogDetaint.logMessageDetaint(title),
+                    LogDetaint.logMessageDetaint(author));
+        }
+
+        sanitiseDescriptions(result);
+        GoogleBookSearch googleBookSearch;
+        try {
+            googleBookSearch = googleBookSearchRepository.insert(
+                    new GoogleBookSearch(title, author, result, LocalDateTime.now().plusMinutes(cacheTimeoutMinutes)));
+        } catch (DuplicateKeyException dke) {
+            // Another instance of the application got there first - so use what it cached
+            LOGGER.debug("Google books search cache entry already inserted elsewhere - using that entry");
+            googleBookSearch = googleBookSearchRepository.findAllByTitleAndAuthor(title, author).stream().findFirst().
+                    orElseThrow(() -> dke);
+            sanitiseDescriptions(googleBookSearch.getBookSearchResult());
+        }
+
+        googleBookSearchCache.put(cacheKey, googleBookSearch);
+        return googleBookSearch;
+    }
+
+    /**
+     * Google Books API data _should_ be safe from CSRF attacks but lets make sure before any description text is
+     * stored against a book! This is done once, before a search is put in the in heap cache, as the cached items
+     * are shared between requests and so must never be changed afterwards.
+     */
+    private static void sanitiseDescriptions(BookSearchResult result) {
+        for (Item item : result.getItems()) {
+            VolumeInfo vlInfo = item.getVolumeInfo();
+            if (vlInfo != null && vlInfo.getDescription() != null) {
+                vlInfo.setDescription(HtmlSanitiserUtils.allowBasicTextFormattingOnly(vlInfo.getDescription()));
+            }
+        }
+    }
+
+    private record GoogleBookSearchCacheKey(String title, String author) {
+    }
 }
@@ -0,0 +1,10 @@
+package com.aidanwhiteley.books.service.dtos;
+
+import com.aidanwhiteley.books.repository.dtos.BookFacetCount;
+
+/**
+ * A difference found between a stored count in the bookFacetCounts collection and the count
+ * calculated from the book collection.
+ */
+public record FacetCountDrift(BookFacetCount.Facet facet, String value, long storedCount, long actualCount) {
+}
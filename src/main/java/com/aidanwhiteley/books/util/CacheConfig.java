@@ -0,0 +1,108 @@
+package com.aidanwhiteley.books.util;
+
+import com.aidanwhiteley.books.repository.dtos.GoogleBookSearch;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * In process caches used by the application. Each cache is bounded in size and has its own expiry
+ * so that data that is changed outside of this JVM (e.g. by another instance of the application)
+ * is only ever stale for a limited time.
+ * <p>
+ * Cache statistics are recorded so that hit / miss rates are available via the Actuator metrics endpoint.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String BOOK_FACETS_CACHE = "bookFacets";
+    public static final String GOOGLE_BOOK_SEARCH_CACHE = "googleBookSearch";
+    public static final String AUDITOR_OWNERS_CACHE = "auditorOwners";
+    public static final String RESOLVED_USERS_CACHE = "resolvedUsers";
+
+    @Value("${books.cache.facets.maxEntries}")
+    private long facetsMaxEntries;
+
+    @Value("${books.cache.facets.expireAfterWriteSeconds}")
+    private long facetsExpireAfterWriteSeconds;
+
+    @Value("${books.cache.googleBookSearch.maxEntries}")
+    private long googleBookSearchMaxEntries;
+
+    @Value("${books.google.books.cacheTimeoutMinutes}")
+    private long googleBookSearchCacheTimeoutMinutes;
+
+    @Value("${books.cache.auditorOwners.maxEntries}")
+    private long auditorOwnersMaxEntries;
+
+    @Value("${books.cache.auditorOwners.expireAfterWriteSeconds}")
+    private long auditorOwnersExpireAfterWriteSeconds;
+
+    @Value("${books.cache.resolvedUsers.maxEntries}")
+    private long resolvedUsersMaxEntries;
+
+    @Value("${books.cache.resolvedUsers.expireAfterWriteSeconds}")
+    private long resolvedUsersExpireAfterWriteSeconds;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Only the explicitly registered caches below are available - no caches created on the fly
+        cacheManager.setCacheNames(List.of());
+
+        cacheManager.registerCustomCache(BOOK_FACETS_CACHE, Caffeine.newBuilder()
+                .maximumSize(facetsMaxEntries)
+                .expireAfterWrite(Duration.ofSeconds(facetsExpireAfterWriteSeconds))
+                .recordStats()
+                .build());
+
+        // An in heap copy of the Mongo held Google Books search cache. Entries expire at the same time as
+        // the Mongo entry they were read from so the two caches never disagree about what has expired.
+        cacheManager.registerCustomCache(GOOGLE_BOOK_SEARCH_CACHE, Caffeine.newBuilder()
+                .maximumSize(googleBookSearchMaxEntries)
+                .expireAfter(Expiry.<Object, Object>creating((key, value) -> googleBookSearchTimeToLive(value)))
+                .recordStats()
+                .build());
+
+        // The Owner recorded as creating / last modifying a book. Evicted whenever any user is saved, has
+        // their roles changed or is deleted (see UserRepository) - the expiry covers changes made elsewhere.
+        cacheManager.registerCustomCache(AUDITOR_OWNERS_CACHE, Caffeine.newBuilder()
+                .maximumSize(auditorOwnersMaxEntries)
+                .expireAfterWrite(Duration.ofSeconds(auditorOwnersExpireAfterWriteSeconds))
+                .recordStats()
+                .build());
+
+        // The users read from the data store for logged on users' JWTs (see JwtAuthenticationUtils). Evicted in
+        // the same way as the auditorOwners cache.
+        cacheManager.registerCustomCache(RESOLVED_USERS_CACHE, Caffeine.newBuilder()
+                .maximumSize(resolvedUsersMaxEntries)
+                .expireAfterWrite(Duration.ofSeconds(resolvedUsersExpireAfterWriteSeconds))
+                .recordStats()
+                .build());
+
+        return cacheManager;
+    }
+
+    private Duration googleBookSearchTimeToLive(Object value) {
+        Duration maxTimeToLive = Duration.ofMinutes(googleBookSearchCacheTimeoutMinutes);
+        if (value instanceof GoogleBookSearch googleBookSearch && googleBookSearch.getExpireAt() != null) {
+            Duration untilExpiry = Duration.between(LocalDateTime.now(), googleBookSearch.getExpireAt());
+            return untilExpiry.isNegative() ? Duration.ZERO : min(untilExpiry, maxTimeToLive);
+        }
+        return maxTimeToLive;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
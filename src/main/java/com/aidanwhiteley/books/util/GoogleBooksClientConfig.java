@@ -0,0 +1,61 @@
+package com.aidanwhiteley.books.util;
+
+import com.aidanwhiteley.books.repository.GoogleBooksApiConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+/**
+ * The HTTP client used for synchronous calls to the Google Books API. A single instance is shared so that
+ * connections are pooled and kept alive between calls.
+ * <p>
+ * The Apache HttpClient asks for, and transparently decompresses, gzip encoded responses by default.
+ * The latency and (uncompressed) size of each response are recorded by GoogleBooksMetricsInterceptor.
+ */
+@Configuration
+public class GoogleBooksClientConfig {
+
+    /**
+     * Name of the request attribute used to tag the metrics for each call with the API operation called.
+     */
+    public static final String OPERATION_ATTRIBUTE = "googleBooksOperation";
+
+    private static final long IDLE_CONNECTION_EVICTION_SECONDS = 30;
+
+    @Bean
+    public CloseableHttpClient googleBooksHttpClient(GoogleBooksApiConfig googleBooksApiConfig) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(googleBooksApiConfig.getConnectTimeout()))
+                .build();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofMilliseconds(googleBooksApiConfig.getReadTimeout()))
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(googleBooksApiConfig.getMaxConnections())
+                        .setMaxConnPerRoute(googleBooksApiConfig.getMaxConnections())
+                        .setDefaultConnectionConfig(connectionConfig)
+                        .build())
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(TimeValue.ofSeconds(IDLE_CONNECTION_EVICTION_SECONDS))
+                .build();
+    }
+
+    @Bean
+    public RestClient googleBooksRestClient(CloseableHttpClient googleBooksHttpClient, MeterRegistry meterRegistry) {
+        return RestClient.builder()
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(googleBooksHttpClient))
+                .requestInterceptor(new GoogleBooksMetricsInterceptor(meterRegistry))
+                .build();
+    }
+}
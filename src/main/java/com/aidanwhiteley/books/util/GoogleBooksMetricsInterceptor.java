@@ -0,0 +1,142 @@
+package com.aidanwhiteley.books.util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Records the time taken by, and the size of the response body of, each call to the Google Books API.
+ * <p>
+ * Metrics are tagged with the GoogleBooksClientConfig.OPERATION_ATTRIBUTE request attribute rather than the URL to avoid every different
+ * search creating a new time series. Both are recorded when the response is closed - i.e. after the body
+ * has been read.
+ */
+class GoogleBooksMetricsInterceptor implements ClientHttpRequestInterceptor {
+
+    static final String REQUESTS_METRIC = "books.google.books.api.requests";
+    static final String RESPONSE_SIZE_METRIC = "books.google.books.api.response.size";
+
+    private static final String OPERATION_TAG = "operation";
+    private static final String STATUS_TAG = "status";
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry meterRegistry;
+
+    GoogleBooksMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+
+        Object operationAttribute = request.getAttributes().get(GoogleBooksClientConfig.OPERATION_ATTRIBUTE);
+        String operation = operationAttribute == null ? UNKNOWN : operationAttribute.toString();
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException e) {
+            sample.stop(timer(operation, "IO_ERROR"));
+            throw e;
+        }
+        return new MeasuredResponse(response, operation, sample);
+    }
+
+    private Timer timer(String operation, String status) {
+        return Timer.builder(REQUESTS_METRIC)
+                .description("Calls to the Google Books API")
+                .tag(OPERATION_TAG, operation)
+                .tag(STATUS_TAG, status)
+                .register(meterRegistry);
+    }
+
+    private final class MeasuredResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final String operation;
+        private final Timer.Sample sample;
+        private long bytesRead;
+        private InputStream body;
+        private boolean recorded;
+
+        private MeasuredResponse(ClientHttpResponse delegate, String operation, Timer.Sample sample) {
+            this.delegate = delegate;
+            this.operation = operation;
+            this.sample = sample;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(delegate.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b != -1) {
+                            bytesRead++;
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = super.read(b, off, len);
+                        if (n > 0) {
+                            bytesRead += n;
+                        }
+                        return n;
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (!recorded) {
+                recorded = true;
+                String status = UNKNOWN;
+                try {
+                    status = String.valueOf(delegate.getStatusCode().value());
+                } catch (IOException e) {
+                    // Just leave the status as unknown in the metrics
+                }
+                sample.stop(timer(operation, status));
+                DistributionSummary.builder(RESPONSE_SIZE_METRIC)
+                        .description("Size of the (uncompressed) response bodies from the Google Books API")
+                        .baseUnit("bytes")
+                        .tag(OPERATION_TAG, operation)
+                        .register(meterRegistry)
+                        .record(bytesRead);
+            }
+            delegate.close();
+        }
+    }
+}
@@ -8,13 +8,19 @@ import com.aidanwhiteley.books.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import static com.aidanwhiteley.books.util.CacheConfig.RESOLVED_USERS_CACHE;
 import static com.aidanwhiteley.books.util.LogDetaint.logMessageDetaint;
 
 @Component
@@ -22,16 +28,22 @@ public class JwtAuthenticationUtils {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtAuthenticationUtils.class);
 
+    private static final String RESOLVED_USER_ATTRIBUTE = JwtAuthenticationUtils.class.getName() + ".resolvedUser";
+
     private final UserRepository userRepository;
 
     private final UserService userService;
 
     private final JwtUtils jwtUtils;
 
-    public JwtAuthenticationUtils(UserRepository userRepository, UserService userService, JwtUtils jwtUtils) {
+    private final Cache resolvedUsers;
+
+    public JwtAuthenticationUtils(UserRepository userRepository, UserService userService, JwtUtils jwtUtils,
+                                  CacheManager cacheManager) {
         this.userRepository = userRepository;
         this.userService = userService;
         this.jwtUtils = jwtUtils;
+        this.resolvedUsers = cacheManager.getCache(RESOLVED_USERS_CACHE);
     }
 
     protected static void handleUnexpectedAuth(JwtAuthentication auth) {
@@ -46,6 +58,7 @@ public class JwtAuthenticationUtils {
      * <p>
      * The caller is allowed to specify whether they want the data store queried for the
      * current state of the user data or whether they just want to use data from the JWT.
+     * Users read from the data store are cached for a short time - see the resolvedUsers cache in CacheConfig.
      *
      * @param principal    The user principal
      * @param useTokenOnly Whether to just look at the data in the JWT or query the data store
@@ -68,6 +81,22 @@ public class JwtAuthenticationUtils {
         }
     }
 
+    /**
+     * @return The user already read from the data store for the principal during the current request - by a call
+     * to extractUserFromPrincipal that didn't just use the JWT. Empty if there isn't one or if not in a request.
+     */
+    public Optional<User> getUserResolvedForCurrentRequest(Principal principal) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (!(principal instanceof JwtAuthentication auth) || requestAttributes == null) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(requestAttributes.getAttribute(RESOLVED_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)).
+                map(User.class::cast).
+                filter(user -> user.getAuthenticationServiceId().equals(auth.getAuthenticationServiceId()) &&
+                        user.getAuthProvider().toString().equals(auth.getAuthProvider()));
+    }
+
     @Bean
     public CommandLineRunner createAndLogActuatorUserToken() {
         return args -> {
@@ -92,6 +121,35 @@ public class JwtAuthenticationUtils {
         String authenticationServiceId = auth.getAuthenticationServiceId();
         String authenticationProviderId = auth.getAuthProvider();
 
+        // Users that aren't found aren't cached as they may be about to be created by logging on
+        String cacheKey = authenticationServiceId + ":" + authenticationProviderId;
+        User user = resolvedUsers.get(cacheKey, User.class);
+        if (user == null) {
+            user = findUser(auth);
+            if (user != null) {
+                resolvedUsers.put(cacheKey, user);
+            }
+        }
+
+        if (user == null) {
+            return Optional.empty();
+        }
+
+        // Callers get their own copy of the cached user as some of them change it
+        User resolvedUser = copyOf(user);
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(RESOLVED_USER_ATTRIBUTE, copyOf(user), RequestAttributes.SCOPE_REQUEST);
+        }
+
+        return Optional.of(resolvedUser);
+    }
+
+    private User findUser(JwtAuthentication auth) {
+
+        String authenticationServiceId = auth.getAuthenticationServiceId();
+        String authenticationProviderId = auth.getAuthProvider();
+
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Query user repository with service id of {} and provider of {}",
                     authenticationServiceId.replaceAll("[\n\r\t]", "_"),
@@ -110,7 +168,11 @@ public class JwtAuthenticationUtils {
                 handleUnexpectedAuth(auth);
         }
 
-        return Optional.ofNullable(user);
+        return user;
+    }
+
+    private static User copyOf(User user) {
+        return user.toBuilder().roles(new ArrayList<>(user.getRoles())).build();
     }
 
     private void checkPrincipalType(Principal principal) {
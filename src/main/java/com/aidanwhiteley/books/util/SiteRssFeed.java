@@ -6,20 +6,36 @@ import com.rometools.rome.feed.rss.Channel;
 import com.rometools.rome.feed.rss.Content;
 import com.rometools.rome.feed.rss.Guid;
 import com.rometools.rome.feed.rss.Item;
+import com.rometools.rome.io.FeedException;
+import com.rometools.rome.io.WireFeedOutput;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Creates the site's RSS feed of recently reviewed books.
+ * <p>
+ * Feed readers poll the feed far more often than books change so the rendered XML is kept in memory and only
+ * re-rendered on the first request after booksChanged() has been called (see SiteRssFeedInvalidator).
+ */
 @Component
 public class SiteRssFeed {
 
     private static final String FEED_TYPE_RSS_2_0 = "rss_2.0";
+    private static final String FEED_ENCODING = StandardCharsets.UTF_8.name();
     private final BookRepository bookRepository;
+    private final AtomicLong booksVersion = new AtomicLong();
+    private volatile CachedSiteRssFeed cachedFeed;
     @Value("${books.feeds.maxentries}")
     private int booksFeedsMaxEntries;
     @Value("${books.feeds.title}")
@@ -33,7 +49,64 @@ public class SiteRssFeed {
         this.bookRepository = bookRepository;
     }
 
+    /**
+     * The rendered XML of the feed along with the values for its ETag and Last-Modified headers.
+     */
+    public record RenderedSiteRssFeed(byte[] xml, String eTag, Instant lastModified) {
+    }
+
+    private record CachedSiteRssFeed(long booksVersion, RenderedSiteRssFeed feed) {
+    }
+
+    /**
+     * Called whenever a book is created, updated or deleted so that the next request re-renders the feed.
+     */
+    public void booksChanged() {
+        booksVersion.incrementAndGet();
+    }
+
+    public RenderedSiteRssFeed getRenderedSiteRssFeed() {
+        CachedSiteRssFeed cached = cachedFeed;
+        if (cached != null && cached.booksVersion() == booksVersion.get()) {
+            return cached.feed();
+        }
+
+        // Only one thread re-renders the feed - any other requests arriving meanwhile wait for its result
+        synchronized (this) {
+            cached = cachedFeed;
+            long version = booksVersion.get();
+            if (cached == null || cached.booksVersion() != version) {
+                cached = new CachedSiteRssFeed(version, renderSiteRssFeed(cached == null ? null : cached.feed()));
+                cachedFeed = cached;
+            }
+            return cached.feed();
+        }
+    }
+
+    private RenderedSiteRssFeed renderSiteRssFeed(RenderedSiteRssFeed previousFeed) {
+        // Last-Modified only has a resolution of seconds so make sure that a re-rendered feed never
+        // looks as old as the feed it replaces
+        Instant lastModified = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        if (previousFeed != null && !lastModified.isAfter(previousFeed.lastModified())) {
+            lastModified = previousFeed.lastModified().plusSeconds(1);
+        }
+
+        Channel channel = createSiteRssFeed(Date.from(lastModified));
+        channel.setEncoding(FEED_ENCODING);
+        try {
+            byte[] xml = new WireFeedOutput().outputString(channel).getBytes(StandardCharsets.UTF_8);
+            return new RenderedSiteRssFeed(xml, "\"" + DigestUtils.md5DigestAsHex(xml) + "\"", lastModified);
+        } catch (FeedException fe) {
+            // Leave logging to global exception handler
+            throw new IllegalStateException("Failed to generate RSS feed", fe);
+        }
+    }
+
     public Channel createSiteRssFeed() {
+        return createSiteRssFeed(new Date());
+    }
+
+    private Channel createSiteRssFeed(Date pubDate) {
         PageRequest pageObj = PageRequest.of(0, booksFeedsMaxEntries);
         Page<Book> recentBooks = bookRepository.findAllByOrderByCreatedDateTimeDesc(pageObj);
 
@@ -41,7 +114,7 @@ public class SiteRssFeed {
         channel.setTitle(booksFeedsTitles);
         channel.setLink(booksFeedsDomain);
         channel.setDescription(booksFeedsDescription);
-        channel.setPubDate(new Date());
+        channel.setPubDate(pubDate);
 
         channel.setItems(recentBooks.stream().map(b -> {
             Item item = new Item();
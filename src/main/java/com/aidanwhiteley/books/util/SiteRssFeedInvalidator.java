@@ -0,0 +1,42 @@
+package com.aidanwhiteley.books.util;
+
+import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.repository.dtos.ReviewFieldsUpdatedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells the SiteRssFeed to re-render the feed whenever a book is inserted, saved or deleted through
+ * the BookRepository or the MongoTemplate.
+ * <p>
+ * Targeted updates (e.g. adding comments or Google Books data) don't raise these events - which is fine
+ * as long as they don't change any of the book fields that appear in the feed. The targeted update of a
+ * review's fields does change them so is listened for separately.
+ */
+@Component
+public class SiteRssFeedInvalidator extends AbstractMongoEventListener<Book> {
+
+    private final SiteRssFeed siteRssFeed;
+
+    public SiteRssFeedInvalidator(SiteRssFeed siteRssFeed) {
+        this.siteRssFeed = siteRssFeed;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Book> event) {
+        siteRssFeed.booksChanged();
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Book> event) {
+        siteRssFeed.booksChanged();
+    }
+
+    @EventListener
+    public void onReviewFieldsUpdated(ReviewFieldsUpdatedEvent event) {
+        siteRssFeed.booksChanged();
+    }
+}
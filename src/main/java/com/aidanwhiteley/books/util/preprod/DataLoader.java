@@ -1,6 +1,9 @@
 package com.aidanwhiteley.books.util.preprod;
 
 import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.service.BookFacetCountsReconciliationService;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.IndexOptions;
 import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +13,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.index.TextIndexDefinition;
 import org.springframework.stereotype.Component;
@@ -19,34 +23,52 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 
 @Component
 public class DataLoader {
 
     private static final String BOOKS_COLLECTION = "book";
+    private static final String COMMENTS_COLLECTION = "comment";
     private static final String USERS_COLLECTION = "user";
     private static final String BOOKS_API_SEARCH_COLLECTION = "googleBookSearch";
+    private static final String BOOK_FACET_COUNTS_COLLECTION = "bookFacetCounts";
     private static final Logger LOGGER = LoggerFactory.getLogger(DataLoader.class);
     private static final String AUTO_LOGON_ID = "Dummy12345678";
     private static final String IN_MEMORY_MONGODB_SPRING_PROFILE = "mongo-java-server";
+    private static final int BULK_INSERT_BATCH_SIZE = 1000;
+    private static final long SYNTHETIC_DATA_SEED = 20180127L;
+    private static final Pattern CREATE_INDEX = Pattern.compile("^db\\.(\\w+)\\.createIndex\\((.*)\\);?$");
 
     private final MongoTemplate template;
     private final PreProdWarnings preProdWarnings;
     private final Environment environment;
+    private final BookFacetCountsReconciliationService bookFacetCountsReconciliationService;
 
     @Value("${books.reload.development.data}")
     private boolean reloadDevelopmentData;
 
+    @Value("${books.reload.development.syntheticBooks}")
+    private int syntheticBooks;
+
     @Value("${books.autoAuthUser}")
     private boolean autoAuthUser;
 
-    public DataLoader(MongoTemplate mongoTemplate, PreProdWarnings preProdWarnings, Environment environment) {
+    public DataLoader(MongoTemplate mongoTemplate, PreProdWarnings preProdWarnings, Environment environment,
+                      BookFacetCountsReconciliationService bookFacetCountsReconciliationService) {
         this.template = mongoTemplate;
         this.preProdWarnings = preProdWarnings;
         this.environment = environment;
+        this.bookFacetCountsReconciliationService = bookFacetCountsReconciliationService;
     }
 
 
@@ -59,6 +81,10 @@ public class DataLoader {
      * the whole file itself isn't a valid JSON object (hence the .data extension rather than .json).
      * <p>
      * "Fail safe" checking for required Spring profile being active and the config switch setting.
+     * <p>
+     * If books.reload.development.syntheticBooks is set, that many generated books (along with users and comments
+     * for them) are added to the sample data and the real application indexes are created so that the application
+     * can be tried out with a production like volume of data.
      */
     @Bean
     @Profile({"dev-mongo-java-server", "dev-mongo-java-server-no-auth", "dev-mongodb-no-auth", "dev-mongodb", "ci"})
@@ -70,7 +96,15 @@ public class DataLoader {
                 preProdWarnings.displayDataReloadWarningMessage();
                 loadBooksData();
                 loadUserData();
-                createFullTextIndex();
+                if (syntheticBooks > 0) {
+                    loadSyntheticData(syntheticBooks);
+                    createIndexesFromIndexFile();
+                } else {
+                    createFullTextIndex();
+                }
+
+                // The books are bulk loaded as plain documents so aren't counted as they are inserted
+                bookFacetCountsReconciliationService.reconcile();
 
             } else {
                 LOGGER.info("Development data not reloaded due to config settings");
@@ -79,52 +113,177 @@ public class DataLoader {
     }
 
     private void loadBooksData() throws IOException {
-        List<String> jsons;
-        ClassPathResource classPathResource = new ClassPathResource("sample_data/books.data");
+        List<String> jsons = readDataFile("sample_data/books.data");
+
+        // Clearing and loading data into books collection. We do this _after_ checking for the
+        // existence of the file that holds the test data.
+        LOGGER.info("Clearing books collection and loading development data for books project");
+        if (template.collectionExists(BOOKS_COLLECTION)) {
+            template.dropCollection(BOOKS_COLLECTION);
+        }
+        // The comments in the development data are embedded in the books. They are moved to the comment
+        // collection at startup by EmbeddedCommentsMigrationService.
+        if (template.collectionExists(COMMENTS_COLLECTION)) {
+            template.dropCollection(COMMENTS_COLLECTION);
+        }
+        if (template.collectionExists(BOOK_FACET_COUNTS_COLLECTION)) {
+            template.dropCollection(BOOK_FACET_COUNTS_COLLECTION);
+        }
+
+        loadInParallelBatches(jsons, BOOKS_COLLECTION, book -> true);
+
+        // Clearing books search collection.
+        LOGGER.info("Clearing books search cache collection");
+        if (template.collectionExists(BOOKS_API_SEARCH_COLLECTION)) {
+            template.dropCollection(BOOKS_API_SEARCH_COLLECTION);
+        }
+    }
+
+    private void loadUserData() throws IOException {
+        List<String> jsons = readDataFile("sample_data/users.data");
+
+        // Clearing and loading data into user collection - happens after user creation file found and loaded
+        LOGGER.info("Clearing users collection and loading development data for books project");
+        if (template.collectionExists(USERS_COLLECTION)) {
+            template.dropCollection(USERS_COLLECTION);
+        }
+
+        loadInParallelBatches(jsons, USERS_COLLECTION, user -> {
+            boolean autoAuthUserServiceId = user.get("authenticationServiceId").toString().contains(AUTO_LOGON_ID);
+            // Only insert the user data for the "auto logon" user if the config says to
+            return !autoAuthUserServiceId || autoAuthUser;
+        });
+    }
+
+    private static List<String> readDataFile(String resourceName) throws IOException {
+        ClassPathResource classPathResource = new ClassPathResource(resourceName);
         try (InputStream resource = classPathResource.getInputStream();
              InputStreamReader inputStreamReader = new InputStreamReader(resource, StandardCharsets.UTF_8);
              BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
+            return bufferedReader.lines().filter(line -> !line.isBlank()).toList();
+        }
+    }
 
-            // Clearing and loading data into books collection. We do this _after_ checking for the
-            // existence of the file that holds the test data.
-            LOGGER.info("Clearing books collection and loading development data for books project");
-            if (template.collectionExists(BOOKS_COLLECTION)) {
-                template.dropCollection(BOOKS_COLLECTION);
-            }
+    /**
+     * Parses and inserts batches of the JSON lines in parallel. The order of the documents in the collection doesn't
+     * matter so each batch is an unordered bulk insert.
+     */
+    private void loadInParallelBatches(List<String> jsons, String collectionName, Predicate<Document> include) {
+        long start = System.nanoTime();
+        AtomicLong linesProcessed = new AtomicLong();
+        AtomicLong documentsInserted = new AtomicLong();
+
+        IntStream.range(0, (jsons.size() + BULK_INSERT_BATCH_SIZE - 1) / BULK_INSERT_BATCH_SIZE).parallel()
+                .forEach(batch -> {
+                    List<String> lines = jsons.subList(batch * BULK_INSERT_BATCH_SIZE,
+                            Math.min(jsons.size(), (batch + 1) * BULK_INSERT_BATCH_SIZE));
+                    List<Document> documents = lines.stream().map(Document::parse).filter(include).toList();
+                    bulkInsert(documents, collectionName);
 
-            jsons = bufferedReader.lines().toList();
-            jsons.stream().map(Document::parse).forEach(i -> template.insert(i, BOOKS_COLLECTION));
+                    documentsInserted.addAndGet(documents.size());
+                    LOGGER.debug("Processed {} of {} lines for the {} collection",
+                            linesProcessed.addAndGet(lines.size()), jsons.size(), collectionName);
+                });
 
-            // Clearing books search collection.
-            LOGGER.info("Clearing books search cache collection");
-            if (template.collectionExists(BOOKS_API_SEARCH_COLLECTION)) {
-                template.dropCollection(BOOKS_API_SEARCH_COLLECTION);
+        logInsertRate(documentsInserted.get(), collectionName, start);
+    }
+
+    private void loadSyntheticData(int numberOfBooks) {
+        LOGGER.info("Generating {} synthetic books with users and comments", numberOfBooks);
+        long start = System.nanoTime();
+
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(SYNTHETIC_DATA_SEED, numberOfBooks);
+        bulkInsert(generator.getUsers(), USERS_COLLECTION);
+
+        List<Document> books = new ArrayList<>(BULK_INSERT_BATCH_SIZE);
+        List<Document> comments = new ArrayList<>(BULK_INSERT_BATCH_SIZE);
+        long commentCount = 0;
+        for (int i = 1; i <= numberOfBooks; i++) {
+            Document book = generator.createBook();
+            books.add(book);
+            comments.addAll(generator.createComments(book));
+
+            if (books.size() == BULK_INSERT_BATCH_SIZE || i == numberOfBooks) {
+                bulkInsert(books, BOOKS_COLLECTION);
+                books.clear();
+            }
+            if (comments.size() >= BULK_INSERT_BATCH_SIZE || i == numberOfBooks) {
+                commentCount += comments.size();
+                bulkInsert(comments, COMMENTS_COLLECTION);
+                comments.clear();
+            }
+            if (i % 100_000 == 0) {
+                LOGGER.info("Generated {} of {} synthetic books in {} ms", i, numberOfBooks,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
             }
         }
+
+        LOGGER.info("Generated {} books, {} users and {} comments in {} ms", numberOfBooks, generator.getUsers().size(),
+                commentCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
     }
 
-    private void loadUserData() throws IOException {
-        List<String> jsons;
-        ClassPathResource classPathResource = new ClassPathResource("sample_data/users.data");
+    private void bulkInsert(List<Document> documents, String collectionName) {
+        if (!documents.isEmpty()) {
+            // Unordered so that the database is free to apply the inserts in parallel
+            template.bulkOps(BulkOperations.BulkMode.UNORDERED, collectionName).insert(documents).execute();
+        }
+    }
+
+    private static void logInsertRate(long documentsInserted, String collectionName, long startNanos) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        LOGGER.info("Loaded {} documents into the {} collection in {} ms ({} documents a second)", documentsInserted,
+                collectionName, elapsedMillis, elapsedMillis == 0 ? documentsInserted : documentsInserted * 1000 / elapsedMillis);
+    }
+
+    /**
+     * Creates the indexes in /src/main/resources/indexes/books.data - the indexes that the real application runs with.
+     * Each line of the file is expected to be a Mongo shell createIndex command. Any index that can't be created
+     * (for example, the full text index when running against the in memory mongo-java-server) is logged and skipped.
+     */
+    private void createIndexesFromIndexFile() throws IOException {
+        List<String> lines;
+        ClassPathResource classPathResource = new ClassPathResource("indexes/books.data");
         try (InputStream resource = classPathResource.getInputStream();
              InputStreamReader inputStreamReader = new InputStreamReader(resource, StandardCharsets.UTF_8);
              BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
+            lines = bufferedReader.lines().map(String::trim).toList();
+        }
 
-            // Clearing and loading data into user collection - happens after user creation file found and loaded
-            LOGGER.info("Clearing users collection and loading development data for books project");
-            if (template.collectionExists(USERS_COLLECTION)) {
-                template.dropCollection(USERS_COLLECTION);
+        for (String line : lines) {
+            Matcher matcher = CREATE_INDEX.matcher(line);
+            if (matcher.matches()) {
+                String collectionName = matcher.group(1);
+                // The shell syntax (e.g. unquoted field names) is accepted by the driver's JSON parser
+                List<Document> arguments = Document.parse("{arguments: [" + matcher.group(2) + "]}")
+                        .getList("arguments", Document.class);
+                Document keys = arguments.getFirst();
+                Document options = arguments.size() > 1 ? arguments.get(1) : new Document();
+                try {
+                    template.getCollection(collectionName).createIndex(keys, toIndexOptions(options));
+                    LOGGER.info("Created index {} on the {} collection", keys.toJson(), collectionName);
+                } catch (MongoException e) {
+                    LOGGER.warn("Couldn't create index {} on the {} collection: {}", keys.toJson(), collectionName,
+                            e.getMessage());
+                }
             }
+        }
+    }
 
-            jsons = bufferedReader.lines().toList();
+    private static IndexOptions toIndexOptions(Document options) {
+        IndexOptions indexOptions = new IndexOptions();
+        if (options.containsKey("name")) {
+            indexOptions.name(options.getString("name"));
         }
-        jsons.stream().map(Document::parse).forEach(i -> {
-            boolean autoAuthUserServiceId = i.get("authenticationServiceId").toString().contains(AUTO_LOGON_ID);
-            // Only insert the user data for the "auto logon" user if the config says to
-            if (!autoAuthUserServiceId || autoAuthUser) {
-                template.insert(i, USERS_COLLECTION);
-            }
-        });
+        if (options.containsKey("unique")) {
+            indexOptions.unique(options.getBoolean("unique"));
+        }
+        if (options.containsKey("expireAfterSeconds")) {
+            indexOptions.expireAfter(options.get("expireAfterSeconds", Number.class).longValue(), TimeUnit.SECONDS);
+        }
+        if (options.containsKey("weights")) {
+            indexOptions.weights(options.get("weights", Document.class));
+        }
+        return indexOptions;
     }
 
     /**
@@ -149,7 +308,6 @@ public class DataLoader {
                     .onField("author", 10F)
                     .onField("genre", 5F)
                     .onField("summary", 4F)
-                    .onField("comments.comment", 3F)
                     .onField("googleBookDetails.volumeInfo.description", 1F)
                     .named("fullTextIndexForTests")
                     .build();
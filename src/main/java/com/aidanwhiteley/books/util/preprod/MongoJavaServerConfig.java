@@ -5,9 +5,14 @@ import com.mongodb.client.MongoClients;
 import com.mongodb.lang.NonNull;
 import de.bwaldvogel.mongo.MongoServer;
 import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
 import org.springframework.data.mongodb.config.AbstractMongoClientConfiguration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
 import java.net.InetSocketAddress;
@@ -23,6 +28,7 @@ public class MongoJavaServerConfig extends AbstractMongoClientConfiguration {
 
     private static final String DB_NAME = "books-mongo-in-memory";
     private final PreProdWarnings preProdWarnings;
+    private String connectionString;
 
     public MongoJavaServerConfig(PreProdWarnings preProdWarnings) {
         this.preProdWarnings = preProdWarnings;
@@ -40,9 +46,37 @@ public class MongoJavaServerConfig extends AbstractMongoClientConfiguration {
 
         preProdWarnings.displayMongoJavaServerWarningMessage();
 
-        MongoServer server = new MongoServer(new MemoryBackend());
-        // bind on a random local port
-        InetSocketAddress serverAddress = server.bind();
-        return MongoClients.create("mongodb://" + serverAddress.getHostName() + ":" + serverAddress.getPort());
+        return MongoClients.create(connectionString());
+    }
+
+    /*
+      The reactive driver (used when adding Google Books data to a review) must talk to the same in memory
+      server as the blocking driver so both clients are created from the one bound server.
+     */
+    @Bean
+    public com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient() {
+        return com.mongodb.reactivestreams.client.MongoClients.create(connectionString());
+    }
+
+    @Bean
+    public ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory(
+            com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient) {
+        return new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient, DB_NAME);
+    }
+
+    @Bean
+    public ReactiveMongoTemplate reactiveMongoTemplate(ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory,
+                                                       MappingMongoConverter mappingMongoConverter) {
+        return new ReactiveMongoTemplate(reactiveMongoDatabaseFactory, mappingMongoConverter);
+    }
+
+    private synchronized String connectionString() {
+        if (connectionString == null) {
+            MongoServer server = new MongoServer(new MemoryBackend());
+            // bind on a random local port
+            InetSocketAddress serverAddress = server.bind();
+            connectionString = "mongodb://" + serverAddress.getHostName() + ":" + serverAddress.getPort();
+        }
+        return connectionString;
     }
 }
\ No newline at end of file
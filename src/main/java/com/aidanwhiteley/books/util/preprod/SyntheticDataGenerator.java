@@ -0,0 +1,307 @@
+package com.aidanwhiteley.books.util.preprod;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates books, users and comments in the same shape as the documents in /src/main/resources/sample_data so that
+ * performance and index choices can be tried out locally against a production like volume of data.
+ * <p>
+ * As with real data, a few genres and authors account for most of the books, most books are rated good or great and
+ * most books have only a few comments. The same seed always generates the same data - ids and dates included, as
+ * they are derived from the seed and a fixed point in time - so that repeated runs can be compared.
+ */
+class SyntheticDataGenerator {
+
+    private static final String BOOK_CLASS = "com.aidanwhiteley.books.domain.Book";
+    private static final String COMMENT_CLASS = "com.aidanwhiteley.books.domain.Comment";
+    private static final String USER_CLASS = "com.aidanwhiteley.books.domain.User";
+
+    private static final int BOOKS_PER_USER = 100;
+    private static final int MIN_USERS = 10;
+    private static final int BOOKS_PER_AUTHOR = 20;
+    private static final int MIN_AUTHORS = 50;
+    private static final double MEAN_COMMENTS_PER_BOOK = 2.0;
+    private static final int MAX_COMMENTS_PER_BOOK = 200;
+    private static final double GOOGLE_BOOK_DETAILS_PROPORTION = 0.85;
+    private static final Duration REVIEW_HISTORY = Duration.ofDays(10 * 365L);
+    // All the generated dates are before this
+    private static final Instant GENERATED_AT = Instant.parse("2025-01-01T00:00:00Z");
+
+    private static final List<String> GENRES = List.of("Novel", "Thriller", "Crime", "Science fiction", "Fantasy",
+            "Biography", "History", "Science", "Travel", "Humour", "Horror", "Romance", "Adventure", "Poetry",
+            "Politics", "Philosophy", "Computing", "Sport", "Cookery", "Art");
+    private static final List<String> FIRST_NAMES = List.of("James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+            "Thomas", "Sarah", "Charles", "Karen", "Aidan", "Fiona", "Ian", "Hilary", "Stef", "Tibor", "Kazuo", "Zadie");
+    private static final List<String> LAST_NAMES = List.of("Smith", "Jones", "Taylor", "Brown", "Williams", "Wilson",
+            "Johnson", "Davies", "Robinson", "Wright", "Thompson", "Evans", "Walker", "White", "Roberts", "Green",
+            "Hall", "Wood", "Jackson", "Clarke", "McEwan", "Mantel", "Penney", "Fischer", "Ishiguro", "Atwood");
+    private static final List<String> TITLE_ADJECTIVES = List.of("Silent", "Hidden", "Last", "Broken", "Golden",
+            "Lost", "Distant", "Burning", "Secret", "Frozen", "Quiet", "Crimson", "Endless", "Forgotten", "Wild");
+    private static final List<String> TITLE_NOUNS = List.of("River", "Garden", "Kingdom", "Station", "Island",
+            "Letter", "Winter", "Harbour", "Mountain", "Library", "Empire", "Orchard", "Lighthouse", "Summer", "Road");
+    private static final List<String> SENTENCES = List.of(
+            "A story that stays with you long after the last page.",
+            "The characters are well drawn and the dialogue rings true.",
+            "It starts slowly but is well worth persevering with.",
+            "The plot has more twists than you would think possible.",
+            "Beautifully written with a real sense of time and place.",
+            "Not the author's best but still an enjoyable read.",
+            "I couldn't put it down and read it in a single weekend.",
+            "The ending felt rushed after such a careful build up.",
+            "Thoroughly recommended to anyone who enjoyed the author's earlier books.",
+            "An absorbing read that takes you to another place - both in time and distance.");
+    private static final List<String> COMMENTS = List.of("Totally agree - a great read.",
+            "I found it hard going to be honest.", "Thanks for the recommendation, added to my list.",
+            "The audiobook version is excellent too.", "Not for me but I can see why people like it.",
+            "One of my favourites of the year.");
+    // Most books are reviewed because the reviewer liked them
+    private static final String[] RATINGS = {"GREAT", "GOOD", "OK", "POOR", "TERRIBLE"};
+    private static final double[] RATING_WEIGHTS = {30, 35, 20, 10, 5};
+
+    private final Random random;
+    private final List<Document> users;
+    private final List<Document> owners;
+    private final List<String> authors;
+    private final SkewedChoice genreChoice;
+    private final SkewedChoice authorChoice;
+    private final SkewedChoice ratingChoice;
+
+    SyntheticDataGenerator(long seed, int numberOfBooks) {
+        this.random = new Random(seed);
+
+        int numberOfUsers = Math.max(MIN_USERS, numberOfBooks / BOOKS_PER_USER);
+        this.users = new ArrayList<>(numberOfUsers);
+        this.owners = new ArrayList<>(numberOfUsers);
+        for (int i = 0; i < numberOfUsers; i++) {
+            Document user = createUser(i);
+            users.add(user);
+            owners.add(ownerOf(user));
+        }
+
+        int numberOfAuthors = Math.max(MIN_AUTHORS, numberOfBooks / BOOKS_PER_AUTHOR);
+        this.authors = new ArrayList<>(numberOfAuthors);
+        int distinctNames = FIRST_NAMES.size() * LAST_NAMES.size();
+        for (int i = 0; i < numberOfAuthors; i++) {
+            // Every author has a different name - numbered once all the combinations of names have been used
+            authors.add(FIRST_NAMES.get(i % FIRST_NAMES.size()) + " " +
+                    LAST_NAMES.get((i / FIRST_NAMES.size()) % LAST_NAMES.size()) +
+                    (i >= distinctNames ? " " + (i / distinctNames + 1) : ""));
+        }
+
+        this.genreChoice = SkewedChoice.zipf(GENRES.size());
+        this.authorChoice = SkewedChoice.zipf(numberOfAuthors);
+        this.ratingChoice = new SkewedChoice(RATING_WEIGHTS);
+    }
+
+    List<Document> getUsers() {
+        return users;
+    }
+
+    /**
+     * @return A book with its comment count set to match the comments later generated for it by
+     * {@link #createComments(Document)}
+     */
+    Document createBook() {
+        String title = "The " + pick(TITLE_ADJECTIVES) + " " + pick(TITLE_NOUNS) +
+                (random.nextInt(4) == 0 ? " " + (random.nextInt(5) + 2) : "");
+        String author = authors.get(authorChoice.next(random));
+        Date created = Date.from(GENERATED_AT.minusSeconds((long) (random.nextDouble() * REVIEW_HISTORY.toSeconds())));
+        Document owner = owners.get(random.nextInt(owners.size()));
+
+        Document book = new Document("_id", randomObjectId(created))
+                .append("_class", BOOK_CLASS)
+                .append("title", title)
+                .append("author", author)
+                .append("genre", GENRES.get(genreChoice.next(random)))
+                .append("summary", createSummary())
+                .append("rating", RATINGS[ratingChoice.next(random)])
+                .append("createdBy", owner)
+                .append("createdDateTime", created)
+                .append("lastModifiedBy", owner)
+                .append("lastModifiedDateTime", created);
+
+        if (random.nextDouble() < GOOGLE_BOOK_DETAILS_PROPORTION) {
+            String googleBookId = randomGoogleBookId();
+            book.append("googleBookId", googleBookId)
+                    .append("googleBookDetails", createGoogleBookDetails(googleBookId, title, author));
+        }
+
+        int numberOfComments = (int) Math.min(MAX_COMMENTS_PER_BOOK,
+                Math.floor(-Math.log(1 - random.nextDouble()) * MEAN_COMMENTS_PER_BOOK));
+        book.append("commentCount", (long) numberOfComments);
+        if (numberOfComments > 0) {
+            book.append("commentsLastModifiedDateTime", created);
+        }
+
+        return book;
+    }
+
+    List<Document> createComments(Document book) {
+        int numberOfComments = book.get("commentCount", Number.class).intValue();
+        String bookId = book.getObjectId("_id").toHexString();
+        Date lastEntered = book.getDate("commentsLastModifiedDateTime");
+
+        List<Document> comments = new ArrayList<>(numberOfComments);
+        for (int i = 0; i < numberOfComments; i++) {
+            // The most recent comment is entered at the time recorded against the book
+            Date entered = new Date(lastEntered.getTime() - i * Duration.ofHours(random.nextInt(72) + 1L).toMillis());
+            comments.add(new Document("_id", randomUuid().toString())
+                    .append("_class", COMMENT_CLASS)
+                    .append("bookId", bookId)
+                    .append("owner", owners.get(random.nextInt(owners.size())))
+                    .append("commentText", pick(COMMENTS))
+                    .append("entered", entered)
+                    .append("deleted", false));
+        }
+        return comments;
+    }
+
+    private Document createUser(int i) {
+        String firstName = pick(FIRST_NAMES);
+        String lastName = pick(LAST_NAMES);
+        Date firstLogon = Date.from(GENERATED_AT.minusSeconds((long) (random.nextDouble() * REVIEW_HISTORY.toSeconds())));
+        return new Document("_id", randomObjectId(firstLogon))
+                .append("_class", USER_CLASS)
+                .append("authenticationServiceId", "synthetic" + i)
+                .append("firstName", firstName)
+                .append("lastName", lastName)
+                .append("fullName", firstName + " " + lastName)
+                .append("email", firstName.toLowerCase() + "." + lastName.toLowerCase() + i + "@example.com")
+                .append("firstLogon", firstLogon)
+                .append("lastLogon", firstLogon)
+                .append("roles", List.of("ROLE_USER", "ROLE_EDITOR"))
+                .append("authProvider", i % 2 == 0 ? "GOOGLE" : "FACEBOOK")
+                .append("adminEmailedAboutSignup", true);
+    }
+
+    private static Document ownerOf(Document user) {
+        return new Document("authenticationServiceId", user.get("authenticationServiceId"))
+                .append("firstName", user.get("firstName"))
+                .append("lastName", user.get("lastName"))
+                .append("fullName", user.get("fullName"))
+                .append("email", user.get("email"))
+                .append("authProvider", user.get("authProvider"));
+    }
+
+    private String createSummary() {
+        int numberOfSentences = 2 + random.nextInt(8);
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < numberOfSentences; i++) {
+            summary.append(pick(SENTENCES)).append(i % 3 == 2 ? "\n" : " ");
+        }
+        return summary.toString().trim();
+    }
+
+    private Document createGoogleBookDetails(String googleBookId, String title, String author) {
+        String thumbnail = "http://books.google.com/books/content?id=" + googleBookId +
+                "&printsec=frontcover&img=1&zoom=1&source=gbs_api";
+        StringBuilder description = new StringBuilder("<p>");
+        for (int i = 0, n = 4 + random.nextInt(12); i < n; i++) {
+            description.append(pick(SENTENCES)).append(i % 4 == 3 ? "</p><p>" : " ");
+        }
+        description.append("</p>");
+
+        Document volumeInfo = new Document("title", title)
+                .append("authors", List.of(author))
+                .append("description", description.toString())
+                .append("industryIdentifiers", List.of(
+                        new Document("type", "ISBN_10").append("identifier", randomDigits(10)),
+                        new Document("type", "ISBN_13").append("identifier", "978" + randomDigits(10))))
+                .append("imageLinks", new Document("smallThumbnail", thumbnail.replace("zoom=1", "zoom=5"))
+                        .append("thumbnail", thumbnail))
+                .append("previewLink", "http://books.google.co.uk/books?id=" + googleBookId + "&hl=&source=gbs_api");
+
+        return new Document("_id", googleBookId)
+                .append("selfLink", "https://www.googleapis.com/books/v1/volumes/" + googleBookId)
+                .append("volumeInfo", volumeInfo)
+                .append("accessInfo", new Document("viewability", "PARTIAL")
+                        .append("embeddable", true)
+                        .append("publicDomain", false));
+    }
+
+    private String randomGoogleBookId() {
+        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789_-";
+        StringBuilder id = new StringBuilder(12);
+        for (int i = 0; i < 12; i++) {
+            id.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return id.toString();
+    }
+
+    /**
+     * An ObjectId with the given timestamp - as a real one would have had - and the rest of its bytes from the seeded
+     * random rather than from the machine, process and counter.
+     */
+    private ObjectId randomObjectId(Date timestamp) {
+        byte[] randomBytes = new byte[8];
+        random.nextBytes(randomBytes);
+        return new ObjectId(ByteBuffer.allocate(12)
+                .putInt((int) (timestamp.getTime() / 1000))
+                .put(randomBytes)
+                .array());
+    }
+
+    private UUID randomUuid() {
+        byte[] randomBytes = new byte[16];
+        random.nextBytes(randomBytes);
+        return UUID.nameUUIDFromBytes(randomBytes);
+    }
+
+    private String randomDigits(int length) {
+        StringBuilder digits = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            digits.append(random.nextInt(10));
+        }
+        return digits.toString();
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    /**
+     * Picks an index with a probability proportional to its weight.
+     */
+    static class SkewedChoice {
+
+        private final double[] cumulativeWeights;
+
+        SkewedChoice(double[] weights) {
+            this.cumulativeWeights = new double[weights.length];
+            double total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                total += weights[i];
+                cumulativeWeights[i] = total;
+            }
+        }
+
+        /**
+         * Index 0 is the most likely, index 1 half as likely, index 2 a third as likely and so on.
+         */
+        static SkewedChoice zipf(int size) {
+            double[] weights = new double[size];
+            for (int i = 0; i < size; i++) {
+                weights[i] = 1.0 / (i + 1);
+            }
+            return new SkewedChoice(weights);
+        }
+
+        int next(Random random) {
+            double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+            int index = Arrays.binarySearch(cumulativeWeights, target);
+            return index >= 0 ? index : Math.min(-index - 1, cumulativeWeights.length - 1);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.aidanwhiteley.books.benchmarks;
+
+import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.domain.Comment;
+import com.aidanwhiteley.books.domain.Owner;
+import com.aidanwhiteley.books.domain.User;
+import com.aidanwhiteley.books.util.BookTestUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times removing the data a caller isn't allowed to see from a page of books - as done by the controllers
+ * for every page of books returned.
+ * <p>
+ * Setting the permissions blanks out owner details so a fresh page is built before each invocation. The pages
+ * are large enough for that not to distort the timings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BookPermissionsBenchmark {
+
+    private static final int COMMENTS_PER_BOOK = 5;
+
+    // A caller with only ROLE_USER is treated the same as an anonymous caller
+    public enum Caller {ANONYMOUS, EDITOR, ADMIN}
+
+    @Param({"1000", "10000"})
+    private int pageSize;
+
+    @Param({"ANONYMOUS", "EDITOR", "ADMIN"})
+    private Caller caller;
+
+    private User user;
+    private Page<Book> page;
+
+    @Setup(Level.Trial)
+    public void setUpCaller() {
+        user = switch (caller) {
+            case ANONYMOUS -> null;
+            case EDITOR -> BookTestUtils.getEditorTestUser();
+            case ADMIN -> BookTestUtils.getTestUser();
+        };
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpPage() {
+        User owner = BookTestUtils.getEditorTestUser();
+        User commenter = BookTestUtils.getADifferentEditorTestUser();
+
+        List<Book> books = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            Book book = BookTestUtils.createTestBook();
+            // Half the books are owned by the editor caller so both branches of the owner check are timed
+            Owner createdBy = new Owner(i % 2 == 0 ? owner : commenter);
+            book.setCreatedBy(createdBy);
+            book.setLastModifiedBy(new Owner(i % 2 == 0 ? owner : commenter));
+
+            List<Comment> comments = new ArrayList<>(COMMENTS_PER_BOOK);
+            for (int j = 0; j < COMMENTS_PER_BOOK; j++) {
+                comments.add(new Comment("Comment " + j, new Owner(j % 2 == 0 ? owner : commenter),
+                        LocalDateTime.now()));
+            }
+            book.setComments(comments);
+            books.add(book);
+        }
+        page = new PageImpl<>(books, PageRequest.of(0, pageSize), pageSize);
+    }
+
+    @Benchmark
+    public void setPermissionsAndContentForUser(Blackhole blackhole) {
+        page.getContent().forEach(b -> b.setPermissionsAndContentForUser(user));
+        blackhole.consume(page);
+    }
+}
@@ -0,0 +1,49 @@
+package com.aidanwhiteley.books.benchmarks;
+
+import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.domain.googlebooks.IndustryIdentifiers;
+import com.aidanwhiteley.books.domain.googlebooks.Item;
+import com.aidanwhiteley.books.domain.googlebooks.VolumeInfo;
+import com.aidanwhiteley.books.util.GoodReadsBookExport;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times formatting a book as a line of the Goodreads CSV export - done once per book in the export.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GoodReadsBookExportBenchmark {
+
+    private Book book;
+
+    @Setup
+    public void setUp() {
+        book = new Book();
+        book.setTitle("First \"second\", third");
+        book.setAuthor("George R.R. Martin");
+        book.setSummary("A summary\nover more than\none line");
+        book.setRating(Book.Rating.GREAT);
+        book.setCreatedDateTime(LocalDateTime.of(2024, 3, 7, 12, 0));
+
+        var volumeInfo = new VolumeInfo();
+        volumeInfo.setIndustryIdentifiers(List.of(
+                new IndustryIdentifiers(IndustryIdentifiers.TYPE_ISBN_10, "0752889516"),
+                new IndustryIdentifiers(IndustryIdentifiers.TYPE_ISBN_13, "9780752889511")));
+        var item = new Item();
+        item.setVolumeInfo(volumeInfo);
+        book.setGoogleBookDetails(item);
+    }
+
+    @Benchmark
+    public String goodReadsExportAsCsv() {
+        return GoodReadsBookExport.goodReadsExportAsCsv(book);
+    }
+}
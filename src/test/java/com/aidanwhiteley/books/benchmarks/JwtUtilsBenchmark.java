@@ -0,0 +1,74 @@
+package com.aidanwhiteley.books.benchmarks;
+
+import com.aidanwhiteley.books.controller.jwt.JwtUtils;
+import com.aidanwhiteley.books.domain.User;
+import com.aidanwhiteley.books.util.BookTestUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times creating the JWT for a logon and getting the user back from a JWT - as done on every authenticated
+ * request. The cached case is the normal one of a user making repeated requests with the same token.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtUtilsBenchmark {
+
+    private static final int ONE_HOUR = 60 * 60 * 1000;
+    // The uncached case cycles through more distinct tokens than the cache can hold so every call is a miss
+    private static final int DISTINCT_TOKENS = 1024;
+
+    private JwtUtils cachingJwtUtils;
+    private JwtUtils nonCachingJwtUtils;
+    private User user;
+    private String token;
+    private String[] distinctTokens;
+    private int nextToken;
+
+    @Setup
+    public void setUp() {
+        String secretKey = JwtUtils.createRandomBase64EncodedSecretKey();
+        cachingJwtUtils = createJwtUtils(secretKey, 1000);
+        nonCachingJwtUtils = createJwtUtils(secretKey, 1);
+
+        user = BookTestUtils.getTestUser();
+        token = cachingJwtUtils.createTokenForUser(user);
+
+        distinctTokens = new String[DISTINCT_TOKENS];
+        for (int i = 0; i < DISTINCT_TOKENS; i++) {
+            User aUser = BookTestUtils.getTestUser();
+            aUser.setFullName(aUser.getFullName() + " " + i);
+            distinctTokens[i] = nonCachingJwtUtils.createTokenForUser(aUser);
+        }
+    }
+
+    @Benchmark
+    public String createTokenForUser() {
+        return cachingJwtUtils.createTokenForUser(user);
+    }
+
+    @Benchmark
+    public User getUserFromTokenCached() {
+        return cachingJwtUtils.getUserFromToken(token);
+    }
+
+    @Benchmark
+    public User getUserFromTokenNotCached() {
+        nextToken = (nextToken + 1) % DISTINCT_TOKENS;
+        return nonCachingJwtUtils.getUserFromToken(distinctTokens[nextToken]);
+    }
+
+    private static JwtUtils createJwtUtils(String secretKey, long cacheMaxEntries) {
+        JwtUtils jwtUtils = new JwtUtils();
+        jwtUtils.setSecretKey(secretKey);
+        jwtUtils.setIssuer("CloudyBookClub");
+        jwtUtils.setExpiryInMilliSeconds(ONE_HOUR);
+        jwtUtils.setValidatedTokensCacheMaxEntries(cacheMaxEntries);
+        return jwtUtils;
+    }
+}
@@ -0,0 +1,54 @@
+package com.aidanwhiteley.books.benchmarks;
+
+import com.aidanwhiteley.books.util.ClientInputSanitiserUtils;
+import com.aidanwhiteley.books.util.HtmlSanitiserUtils;
+import com.aidanwhiteley.books.util.LogDetaint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the sanitising of user and Google Books API input and the detainting of logged values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SanitisingBenchmark {
+
+    // Roughly the size and mix of markup of a Google Books API description
+    private static final String DESCRIPTION = ("<p>A <b>bold</b> and <i>italic</i> description with a " +
+            "<a href=\"https://example.com\">link</a> and a <script>alert('xss')</script> script.</p>" +
+            "<ul><li>First point</li><li>Second point</li></ul><br/>").repeat(10);
+
+    private static final String TITLE = "The Hitchhiker's Guide to the Galaxy";
+    private static final String GOOGLE_BOOK_ID = "oMVIzzKjJCcC<script>";
+    private static final String LOG_MESSAGE = "A value\r\nwith\tcontrol characters\nin it";
+
+    @Benchmark
+    public String allowBasicTextFormattingOnly() {
+        return HtmlSanitiserUtils.allowBasicTextFormattingOnly(DESCRIPTION);
+    }
+
+    @Benchmark
+    public String allowNoHtmlTags() {
+        return HtmlSanitiserUtils.allowNoHtmlTags(DESCRIPTION);
+    }
+
+    @Benchmark
+    public String logMessageDetaint() {
+        return LogDetaint.logMessageDetaint(LOG_MESSAGE);
+    }
+
+    @Benchmark
+    public String sanitiseGoogleBookId() {
+        return ClientInputSanitiserUtils.sanitiseGoogleBookId(GOOGLE_BOOK_ID);
+    }
+
+    @Benchmark
+    public boolean isValidTitleOrAuthor() {
+        return ClientInputSanitiserUtils.isValidTitleOrAuthor(TITLE);
+    }
+}
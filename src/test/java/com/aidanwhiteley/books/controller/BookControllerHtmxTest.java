@@ -5,9 +5,14 @@ import ch.qos.logback.classic.LoggerContext;
 import com.aidanwhiteley.books.controller.jwt.JwtAuthenticationService;
 import com.aidanwhiteley.books.controller.jwt.JwtUtils;
 import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.domain.Comment;
+import com.aidanwhiteley.books.domain.Owner;
 import com.aidanwhiteley.books.repository.BookRepository;
 import com.aidanwhiteley.books.util.BookTestUtils;
+import com.aidanwhiteley.books.util.CacheConfig;
 import de.bwaldvogel.mongo.wire.MongoWireProtocolHandler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.Cookie;
 import org.jsoup.Jsoup;
 import org.junit.jupiter.api.Test;
@@ -16,6 +21,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
@@ -46,6 +52,9 @@ public class BookControllerHtmxTest {
     @Autowired
     private Environment environment;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void findBooksOnHomePage() throws Exception {
 
@@ -71,6 +80,61 @@ public class BookControllerHtmxTest {
         assertTrue(element.html().contains(BookTestUtils.J_UNIT_TESTING_FOR_BEGINNERS));
     }
 
+    @Test
+    void bookReviewRevalidatesWithETag() throws Exception {
+        String bookId = createTestBook().getId();
+
+        var result = mockMvc.perform(get("/bookreview?bookId=" + bookId))
+                .andExpect(status().isOk())
+                .andReturn();
+        String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+        assertNotNull(result.getResponse().getHeader(HttpHeaders.LAST_MODIFIED));
+
+        mockMvc.perform(get("/bookreview?bookId=" + bookId).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // A logged on user is shown a different page so mustn't be sent a 304 for the anonymous user's page
+        Cookie cookie = new Cookie(JwtAuthenticationService.JWT_COOKIE_NAME,
+                jwtUtils.createTokenForUser(BookTestUtils.getEditorTestUser()));
+        mockMvc.perform(get("/bookreview?bookId=" + bookId).header(HttpHeaders.IF_NONE_MATCH, eTag).cookie(cookie))
+                .andExpect(status().isOk());
+
+        // Comments are added with a targeted update that doesn't change the book's lastModifiedDateTime
+        bookRepository.addCommentToBook(bookId, new Comment("A new comment", new Owner(BookTestUtils.getTestUser())));
+        var afterComment = mockMvc.perform(get("/bookreview?bookId=" + bookId).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNotEquals(eTag, afterComment.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void bookReviewPagesOlderComments() throws Exception {
+        String bookId = createTestBook().getId();
+        final int commentsPageSize = 20;
+        for (int i = 0; i <= commentsPageSize; i++) {
+            bookRepository.addCommentToBook(bookId, new Comment("Comment " + i, new Owner(BookTestUtils.getTestUser())));
+        }
+
+        var result = mockMvc.perform(get("/bookreview?bookId=" + bookId))
+                .andExpect(status().isOk())
+                .andReturn();
+        var page = Jsoup.parse(result.getResponse().getContentAsString());
+        assertEquals(commentsPageSize, page.select("#comments-list li.comment-entry span").size());
+        var olderComments = page.selectFirst("#comments-list button[hx-get]");
+        assertNotNull(olderComments);
+        assertEquals("/bookreview/comments?bookId=" + bookId + "&pagenum=2", olderComments.attr("hx-get"));
+
+        var olderResult = mockMvc.perform(get(olderComments.attr("hx-get")).header(BookControllerHtmx.HX_REQUEST, true))
+                .andExpect(status().isOk())
+                .andReturn();
+        var olderPage = Jsoup.parse(olderResult.getResponse().getContentAsString());
+        assertEquals(1, olderPage.select("li.comment-entry span").size());
+        assertTrue(olderPage.select("li.comment-entry span").text().contains("Comment 0"));
+        assertNull(olderPage.selectFirst("button[hx-get]"));
+    }
+
     @Test
     void findByAuthor() throws Exception {
         createTestBook();
@@ -85,6 +149,24 @@ public class BookControllerHtmxTest {
         assertTrue(result.getResponse().containsHeader(BookControllerHtmx.HX_TRIGGER_AFTER_SWAP));
     }
 
+    @Test
+    void htmxResultsPageDoesNotReadFacets() throws Exception {
+        double facetReads = facetCacheGets();
+        mockMvc.perform(get("/find?pagenum=1&author=" + BookTestUtils.DR_ZEUSS)
+                        .header(BookControllerHtmx.HX_REQUEST, true))
+                .andExpect(status().isOk());
+        assertEquals(facetReads, facetCacheGets());
+
+        mockMvc.perform(get("/find?pagenum=1&author=" + BookTestUtils.DR_ZEUSS))
+                .andExpect(status().isOk());
+        assertTrue(facetCacheGets() > facetReads);
+    }
+
+    private double facetCacheGets() {
+        return meterRegistry.get("cache.gets").tag("cache", CacheConfig.BOOK_FACETS_CACHE).functionCounters().stream()
+                .mapToDouble(FunctionCounter::count).sum();
+    }
+
     @Test
     void findByAuthorBadParams() throws Exception {
         // Temporarily turn off unwanted logging during this specific test
@@ -206,6 +288,40 @@ public class BookControllerHtmxTest {
         assertTrue(elements.size() >= 8);
     }
 
+    @Test
+    void findRecentByCursor() throws Exception {
+        var result = mockMvc.perform(get("/recent?cursor=")
+                        .header(BookControllerHtmx.HX_REQUEST, true))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/html"))
+                .andReturn();
+        var document = Jsoup.parse(result.getResponse().getContentAsString());
+        assertEquals(7, document.select("td.firstTableCol").size());
+        assertTrue(document.select("nav .pagination").isEmpty());
+        var nextPageRow = document.selectFirst("tr[hx-trigger=revealed]");
+        assertNotNull(nextPageRow);
+
+        // The next page is just the table rows to append
+        result = mockMvc.perform(get(nextPageRow.attr("hx-get"))
+                        .header(BookControllerHtmx.HX_REQUEST, true))
+                .andExpect(status().isOk())
+                .andReturn();
+        var output = result.getResponse().getContentAsString();
+        assertFalse(output.contains("<table"));
+        assertFalse(Jsoup.parseBodyFragment("<table>" + output + "</table>").select("td.firstTableCol").isEmpty());
+    }
+
+    @Test
+    void findByGenreByCursor() throws Exception {
+        createTestBook();
+        var result = mockMvc.perform(get("/find?cursor=&genre=" + BookTestUtils.COMPUTING))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/html"))
+                .andReturn();
+        var element = Jsoup.parse(result.getResponse().getContentAsString()).selectFirst("td.firstTableCol");
+        assertTrue(element.html().contains(BookTestUtils.J_UNIT_TESTING_FOR_BEGINNERS));
+    }
+
     @Test
     void getBookByRating() throws Exception {
         var result = mockMvc.perform(get("/getBooksByRating?rating=great")
@@ -1,5 +1,6 @@
 package com.aidanwhiteley.books.controller;
 
+import com.aidanwhiteley.books.controller.jwt.JwtAuthenticationService;
 import com.aidanwhiteley.books.controller.jwt.JwtUtils;
 import com.aidanwhiteley.books.domain.Book;
 import com.aidanwhiteley.books.domain.User;
@@ -60,6 +61,31 @@ public class BookControllerTest extends IntegrationTest {
         assertEquals(book.getId(), uri.getPath().substring(uri.getPath().lastIndexOf("/") + 1));
     }
 
+    @Test
+    void findBookByIdRevalidatesWithETag() {
+        URI uri = BookTestUtils.postBookToServer(jwtUtils, testRestTemplate).getHeaders().getLocation();
+
+        ResponseEntity<Book> response = testRestTemplate.getForEntity(uri, Book.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String eTag = response.getHeaders().getETag();
+        assertNotNull(eTag);
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch(eTag);
+        ResponseEntity<Book> conditionalResponse = testRestTemplate.exchange(uri, HttpMethod.GET,
+                new HttpEntity<>(requestHeaders), Book.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, conditionalResponse.getStatusCode());
+        assertNull(conditionalResponse.getBody());
+
+        // The JSON returned to an admin includes more data so has a different ETag
+        requestHeaders.add("Cookie", JwtAuthenticationService.JWT_COOKIE_NAME + "=" +
+                jwtUtils.createTokenForUser(BookTestUtils.getTestUser()));
+        ResponseEntity<Book> adminResponse = testRestTemplate.exchange(uri, HttpMethod.GET,
+                new HttpEntity<>(requestHeaders), Book.class);
+        assertEquals(HttpStatus.OK, adminResponse.getStatusCode());
+        assertNotEquals(eTag, adminResponse.getHeaders().getETag());
+    }
+
     @Test
     void findByAuthor() {
         BookTestUtils.postBookToServer(jwtUtils, testRestTemplate);
@@ -75,6 +101,38 @@ public class BookControllerTest extends IntegrationTest {
         assertFalse(books.isEmpty(), "No books found");
     }
 
+    @Test
+    void findByCursor() {
+        BookTestUtils.postBookToServer(jwtUtils, testRestTemplate);
+
+        ResponseEntity<String> response = testRestTemplate.exchange("/api/books?cursor=&size=2", HttpMethod.GET,
+                null, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<Book> books = JsonPath.read(response.getBody(), "$.content");
+        assertEquals(2, books.size());
+        Integer total = JsonPath.read(response.getBody(), "$.totalElements");
+        assertTrue(total > 2);
+        String nextCursor = JsonPath.read(response.getBody(), "$.nextCursor");
+        assertNotNull(nextCursor);
+
+        response = testRestTemplate.exchange("/api/books?cursor=" + nextCursor + "&size=2&includeTotal=false",
+                HttpMethod.GET, null, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        books = JsonPath.read(response.getBody(), "$.content");
+        assertFalse(books.isEmpty());
+        assertNull(JsonPath.read(response.getBody(), "$.totalElements"));
+    }
+
+    @Test
+    void findByCursorBadParams() {
+        ResponseEntity<String> response = testRestTemplate.exchange("/api/books?cursor=&size=" + (maxPageSize + 1),
+                HttpMethod.GET, null, String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+
+        response = testRestTemplate.exchange("/api/books?cursor=rubbish&size=2", HttpMethod.GET, null, String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
     @Test
     void testSensitiveDataNotReturnedToAnonymousUser() {
         ResponseEntity<Book> response = BookTestUtils.postBookToServer(jwtUtils, testRestTemplate);
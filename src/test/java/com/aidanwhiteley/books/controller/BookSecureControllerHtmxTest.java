@@ -365,7 +365,7 @@ public class BookSecureControllerHtmxTest {
         String flashMessage = output.getResponse().getHeaderValue(BookSecureControllerHtmx.HX_TRIGGER_AFTER_SWAP).toString();
         assertTrue(flashMessage.contains("created"));
 
-        Book bookWithComment = bookRepository.findById(bookId).get();
+        Book bookWithComment = bookRepository.findCommentsForBook(bookId);
         assertEquals(1, bookWithComment.getComments().size());
     }
 
@@ -399,7 +399,7 @@ public class BookSecureControllerHtmxTest {
         String flashMessage = output.getResponse().getHeaderValue(BookSecureControllerHtmx.HX_TRIGGER_AFTER_SWAP).toString();
         assertTrue(flashMessage.contains("correct"));
 
-        Book bookWithComment = bookRepository.findById(bookId).get();
+        Book bookWithComment = bookRepository.findCommentsForBook(bookId);
         assertEquals(0, bookWithComment.getComments().size());
     }
 
@@ -426,7 +426,7 @@ public class BookSecureControllerHtmxTest {
                 .andExpect(content().contentTypeCompatibleWith("text/html"))
                 .andReturn();
 
-        Book bookWithComment = bookRepository.findById(bookId).get();
+        Book bookWithComment = bookRepository.findCommentsForBook(bookId);
         String commentId = bookWithComment.getComments().getFirst().getId();
 
         MockHttpServletRequestBuilder deleteComment = delete("/deletecomment/?bookId=" + bookId +
@@ -439,7 +439,7 @@ public class BookSecureControllerHtmxTest {
                 .andExpect(content().contentTypeCompatibleWith("text/html"))
                 .andReturn();
 
-        Book bookWithoutComment = bookRepository.findById(bookId).get();
+        Book bookWithoutComment = bookRepository.findCommentsForBook(bookId);
         assertTrue(bookWithoutComment.getComments().getFirst().isDeleted());
 
         deleteComment = delete("/deletecomment/?bookId=" + "" +
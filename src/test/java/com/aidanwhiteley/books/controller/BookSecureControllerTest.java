@@ -6,6 +6,7 @@ import com.aidanwhiteley.books.domain.Book;
 import com.aidanwhiteley.books.domain.Comment;
 import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.domain.User.Role;
+import com.aidanwhiteley.books.repository.dtos.GoogleBookEnrichmentJob;
 import com.aidanwhiteley.books.util.BookTestUtils;
 import com.aidanwhiteley.books.util.IntegrationTest;
 import com.jayway.jsonpath.JsonPath;
@@ -14,9 +15,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.resttestclient.TestRestTemplate;
 import org.springframework.boot.resttestclient.autoconfigure.AutoConfigureTestRestTemplate;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.http.*;
 
 import java.net.URI;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -33,6 +36,9 @@ class BookSecureControllerTest extends IntegrationTest {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Value("${books.users.max.page.size}")
     private int maxPageSize;
 
@@ -264,6 +270,44 @@ class BookSecureControllerTest extends IntegrationTest {
         assertFalse(bookReaders.isEmpty());
     }
 
+    @Test
+    void deadGoogleBookEnrichmentJobsAreOnlyAvailableToAdmins() {
+        final String googleBookId = "ADeadJobGoogleBookId";
+        mongoTemplate.save(new GoogleBookEnrichmentJob(googleBookId, List.of(), GoogleBookEnrichmentJob.Status.DEAD,
+                3, LocalDateTime.now(), "A test failure", LocalDateTime.now()));
+        String xsrfToken = BookTestUtils.getXsrfToken(testRestTemplate);
+
+        User editor = BookTestUtils.getEditorTestUser();
+        HttpEntity<Book> editorRequest = BookTestUtils.getBookHttpEntity(null, jwtUtils.createTokenForUser(editor), xsrfToken);
+        assertEquals(HttpStatus.FORBIDDEN, testRestTemplate.exchange("/secure/api/googlebooks/enrichment/dead",
+                HttpMethod.GET, editorRequest, String.class).getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, testRestTemplate.exchange("/secure/api/googlebooks/enrichment/dead/" +
+                googleBookId + "/retry", HttpMethod.POST, editorRequest, String.class).getStatusCode());
+
+        User admin = BookTestUtils.getTestUser();
+        HttpEntity<Book> adminRequest = BookTestUtils.getBookHttpEntity(null, jwtUtils.createTokenForUser(admin), xsrfToken);
+        ResponseEntity<String> response = testRestTemplate.exchange("/secure/api/googlebooks/enrichment/dead",
+                HttpMethod.GET, adminRequest, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<String> deadJobIds = JsonPath.read(response.getBody(), "$[*].id");
+        assertTrue(deadJobIds.contains(googleBookId));
+
+        assertEquals(HttpStatus.ACCEPTED, testRestTemplate.exchange("/secure/api/googlebooks/enrichment/dead/" +
+                googleBookId + "/retry", HttpMethod.POST, adminRequest, String.class).getStatusCode());
+    }
+
+    @Test
+    void retryOfUnknownGoogleBookEnrichmentJobIsNotFound() {
+        User admin = BookTestUtils.getTestUser();
+        HttpEntity<Book> request = BookTestUtils.getBookHttpEntity(null, jwtUtils.createTokenForUser(admin),
+                BookTestUtils.getXsrfToken(testRestTemplate));
+
+        ResponseEntity<String> response = testRestTemplate.exchange(
+                "/secure/api/googlebooks/enrichment/dead/NotADeadJobGoogleBookId/retry", HttpMethod.POST, request,
+                String.class);
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
     @Test
     void testDebugHeaders() {
         User user = BookTestUtils.getTestUser();
@@ -5,9 +5,13 @@ import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.domain.googlebooks.Item;
 import com.aidanwhiteley.books.repository.BookRepository;
 import com.aidanwhiteley.books.repository.GoogleBooksDaoSync;
+import com.aidanwhiteley.books.repository.dtos.BookFacets;
+import com.aidanwhiteley.books.repository.dtos.UpdatedBook;
+import com.aidanwhiteley.books.service.GoogleBookEnrichmentService;
 import com.aidanwhiteley.books.util.JwtAuthenticationUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -15,6 +19,7 @@ import java.security.Principal;
 import java.util.Collections;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
@@ -29,6 +34,8 @@ class BookSecureControllerWithMocksTest {
     private BookRepository bookRepository;
     @MockitoBean
     private GoogleBooksDaoSync googleBooksDaoSync;
+    @MockitoBean
+    private GoogleBookEnrichmentService googleBookEnrichmentService;
 
     @Test
     void updateBookWithoutSettingGoogleBookData() {
@@ -36,11 +43,13 @@ class BookSecureControllerWithMocksTest {
         Book book = Book.builder().id(BOOK_ID_1).build();
         Principal principal = initTest(book);
 
-        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, null, jwtAuthenticationUtils);
+        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, googleBookEnrichmentService, jwtAuthenticationUtils);
         controller.updateBook(book, principal);
 
         verify(googleBooksDaoSync, times(0)).searchGoogleBooksByGoogleBookId(anyString());
-        verify(bookRepository, times(1)).save(book);
+        verify(googleBookEnrichmentService, never()).requestGoogleBookDetails(anyString(), anyString());
+        verify(bookRepository, times(1)).updateReviewFields(eq(book), any(User.class), isNull());
+        verify(bookRepository, never()).save(any(Book.class));
     }
 
     @Test
@@ -49,12 +58,13 @@ class BookSecureControllerWithMocksTest {
         Book book = Book.builder().id(BOOK_ID_1).googleBookId(GOOGLE_BOOK_ID_1).build();
         Principal principal = initTest(book);
 
-        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, null, jwtAuthenticationUtils);
+        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, googleBookEnrichmentService, jwtAuthenticationUtils);
         controller.updateBook(book, principal);
 
         // Same googleBookId on existing book as the updated book
         verify(googleBooksDaoSync, times(0)).searchGoogleBooksByGoogleBookId(GOOGLE_BOOK_ID_1);
-        verify(bookRepository, times(1)).save(book);
+        verify(googleBookEnrichmentService, never()).requestGoogleBookDetails(anyString(), anyString());
+        verify(bookRepository, times(1)).updateReviewFields(eq(book), any(User.class), isNull());
     }
 
     @Test
@@ -63,12 +73,32 @@ class BookSecureControllerWithMocksTest {
         Book book1 = Book.builder().id(BOOK_ID_1).googleBookId(GOOGLE_BOOK_ID_1).build();
         Principal principal = initTest(book1);
 
-        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, null, jwtAuthenticationUtils);
+        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, googleBookEnrichmentService, jwtAuthenticationUtils);
         Book book2 = Book.builder().id(BOOK_ID_1).googleBookId(GOOGLE_BOOK_ID_2).build();
         controller.updateBook(book2, principal);
 
-        verify(googleBooksDaoSync, times(1)).searchGoogleBooksByGoogleBookId(GOOGLE_BOOK_ID_2);
-        verify(bookRepository, times(1)).save(book2);
+        // The Google Book details of a changed Google book id are retrieved in the background
+        verify(googleBooksDaoSync, never()).searchGoogleBooksByGoogleBookId(anyString());
+        verify(googleBookEnrichmentService, times(1)).requestGoogleBookDetails(BOOK_ID_1, GOOGLE_BOOK_ID_2);
+        verify(bookRepository, times(1)).updateReviewFields(eq(book2), any(User.class), isNull());
+    }
+
+    @Test
+    void updateBookSetDifferentGoogleBookDataWithMatchingDetails() {
+
+        Book book1 = Book.builder().id(BOOK_ID_1).googleBookId(GOOGLE_BOOK_ID_1).build();
+        Principal principal = initTest(book1);
+
+        // The details sent with the book are for the new Google book id but it is the stored Google book id
+        // that decides whether they need retrieving
+        Item item = new Item();
+        item.setId(GOOGLE_BOOK_ID_2);
+        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, googleBookEnrichmentService, jwtAuthenticationUtils);
+        Book book2 = Book.builder().id(BOOK_ID_1).googleBookId(GOOGLE_BOOK_ID_2).googleBookDetails(item).build();
+        controller.updateBook(book2, principal);
+
+        verify(googleBooksDaoSync, never()).searchGoogleBooksByGoogleBookId(anyString());
+        verify(googleBookEnrichmentService, times(1)).requestGoogleBookDetails(BOOK_ID_1, GOOGLE_BOOK_ID_2);
     }
 
     @Test
@@ -77,11 +107,25 @@ class BookSecureControllerWithMocksTest {
         Book book1 = Book.builder().id(BOOK_ID_1).googleBookId(GOOGLE_BOOK_ID_1).googleBookDetails(new Item()).build();
         Principal principal = initTest(book1);
 
-        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, null, jwtAuthenticationUtils);
+        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, googleBookEnrichmentService, jwtAuthenticationUtils);
         controller.updateBook(book1, principal);
 
         verify(googleBooksDaoSync, times(0)).searchGoogleBooksByGoogleBookId(anyString());
-        verify(bookRepository, times(1)).save(book1);
+        verify(googleBookEnrichmentService, never()).requestGoogleBookDetails(anyString(), anyString());
+        verify(bookRepository, times(1)).updateReviewFields(eq(book1), any(User.class), isNull());
+    }
+
+    @Test
+    void updateBookNotAllowedForUser() {
+
+        Book book = Book.builder().id(BOOK_ID_1).build();
+        Principal principal = initTest(book);
+        when(bookRepository.updateReviewFields(eq(book), any(User.class), any())).thenReturn(Optional.empty());
+        when(bookRepository.existsById(BOOK_ID_1)).thenReturn(true);
+
+        BookSecureController controller = new BookSecureController(bookRepository, googleBooksDaoSync, googleBookEnrichmentService, jwtAuthenticationUtils);
+
+        assertEquals(HttpStatus.FORBIDDEN, controller.updateBook(book, principal).getStatusCode());
     }
 
     private Principal initTest(Book book) {
@@ -90,8 +134,9 @@ class BookSecureControllerWithMocksTest {
 
         when(jwtAuthenticationUtils.extractUserFromPrincipal(principal, false))
                 .thenReturn(Optional.of(adminUser));
-        when(bookRepository.findById(BOOK_ID_1))
-                .thenReturn(Optional.ofNullable(book));
+        // The book's state before the update is what is currently stored - i.e. the book passed in
+        when(bookRepository.updateReviewFields(any(Book.class), eq(adminUser), any()))
+                .thenReturn(Optional.of(new UpdatedBook(book, BookFacets.of(book), book.getGoogleBookId())));
 
         return principal;
     }
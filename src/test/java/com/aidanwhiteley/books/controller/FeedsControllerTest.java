@@ -4,7 +4,9 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
 import com.aidanwhiteley.books.controller.jwt.JwtAuthenticationService;
 import com.aidanwhiteley.books.controller.jwt.JwtUtils;
+import com.aidanwhiteley.books.domain.Book;
 import com.aidanwhiteley.books.domain.User;
+import com.aidanwhiteley.books.repository.BookRepository;
 import com.aidanwhiteley.books.service.GoodReadsExportService;
 import com.aidanwhiteley.books.util.*;
 import com.rometools.rome.feed.rss.Channel;
@@ -26,8 +28,8 @@ import org.springframework.boot.resttestclient.autoconfigure.AutoConfigureTestRe
 import org.springframework.http.*;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.security.Principal;
-import java.util.Collections;
 import java.util.Optional;
 
 
@@ -43,6 +45,9 @@ class FeedsControllerTest extends IntegrationTest {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private BookRepository bookRepository;
+
     @Value("${books.feeds.title}")
     private String booksFeedsTitles;
 
@@ -86,6 +91,35 @@ class FeedsControllerTest extends IntegrationTest {
         }
     }
 
+    @Test
+    void checkRssFeedIsNotModifiedUntilABookChanges() {
+        String url = this.testRestTemplate.getRootUri() + "/feeds/rss";
+
+        ResponseEntity<String> response = testRestTemplate.getForEntity(url, String.class);
+        assertEquals(HttpStatusCode.valueOf(200), response.getStatusCode());
+        String eTag = response.getHeaders().getETag();
+        assertNotNull(eTag);
+        assertTrue(response.getHeaders().getLastModified() > 0);
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch(eTag);
+        ResponseEntity<String> conditionalResponse = testRestTemplate.exchange(url, HttpMethod.GET,
+                new HttpEntity<>(requestHeaders), String.class);
+        assertEquals(HttpStatusCode.valueOf(304), conditionalResponse.getStatusCode());
+        assertNull(conditionalResponse.getBody());
+
+        Book book = bookRepository.insert(BookTestUtils.createTestBook());
+        try {
+            ResponseEntity<String> changedResponse = testRestTemplate.exchange(url, HttpMethod.GET,
+                    new HttpEntity<>(requestHeaders), String.class);
+            assertEquals(HttpStatusCode.valueOf(200), changedResponse.getStatusCode());
+            assertNotEquals(eTag, changedResponse.getHeaders().getETag());
+            assertTrue(changedResponse.getHeaders().getLastModified() > response.getHeaders().getLastModified());
+        } finally {
+            bookRepository.deleteById(book.getId());
+        }
+    }
+
     @Test
     void checkBooksExportNotLoggedOnHasNoBooks() {
         String rootUri = this.testRestTemplate.getRootUri();
@@ -141,13 +175,13 @@ class FeedsControllerTest extends IntegrationTest {
             mockAuthUtils
         ) {
             @Override
-            public String findRecentActivity() {
+            public ResponseEntity<byte[]> findRecentActivity() {
                 Channel channel = mockSiteRssFeed.createSiteRssFeed();
                 // Create a mock WireFeedOutput that throws FeedException
                 WireFeedOutput output = mock(WireFeedOutput.class);
                 try {
                     when(output.outputString(any())).thenThrow(new FeedException("Test FeedException"));
-                    return output.outputString(channel);
+                    return ResponseEntity.ok(output.outputString(channel).getBytes());
                 } catch (FeedException fe) {
                     throw new IllegalStateException("Failed to generate RSS feed", fe);
                 }
@@ -186,10 +220,6 @@ class FeedsControllerTest extends IntegrationTest {
         when(mockAuthUtils.extractUserFromPrincipal(mockPrincipal, false))
                 .thenReturn(Optional.of(testUser));
 
-        // Mock the export service to return some CSV data
-        when(mockGoodReadsExportService.getExportInGoodReadsFormat(testUser))
-                .thenReturn(Collections.singletonList("Test CSV Data"));
-
         // Mock getOutputStream to throw IOException
         IOException testException = new IOException("Test IOException - stream error");
         when(mockResponse.getOutputStream()).thenThrow(testException);
@@ -225,10 +255,6 @@ class FeedsControllerTest extends IntegrationTest {
         when(mockAuthUtils.extractUserFromPrincipal(mockPrincipal, false))
                 .thenReturn(Optional.of(testUser));
 
-        // Mock the export service to return some CSV data
-        when(mockGoodReadsExportService.getExportInGoodReadsFormat(testUser))
-                .thenReturn(Collections.singletonList("Test CSV Data"));
-
         // Mock getOutputStream to throw IOException
         IOException streamException = new IOException("Test IOException - stream error");
         when(mockResponse.getOutputStream()).thenThrow(streamException);
@@ -256,7 +282,7 @@ class FeedsControllerTest extends IntegrationTest {
 
     @Test
     void testExportToCSVHandlesIOExceptionDuringWrite() throws IOException {
-        // Given - Mock dependencies where ServletOutputStream.print throws IOException
+        // Given - Mock dependencies where writing to the ServletOutputStream throws IOException
         SiteRssFeed mockSiteRssFeed = mock(SiteRssFeed.class);
         GoodReadsExportService mockGoodReadsExportService = mock(GoodReadsExportService.class);
         JwtAuthenticationUtils mockAuthUtils = mock(JwtAuthenticationUtils.class);
@@ -270,15 +296,19 @@ class FeedsControllerTest extends IntegrationTest {
         when(mockAuthUtils.extractUserFromPrincipal(mockPrincipal, false))
                 .thenReturn(Optional.of(testUser));
 
-        // Mock the export service to return some CSV data
-        when(mockGoodReadsExportService.getExportInGoodReadsFormat(testUser))
-                .thenReturn(Collections.singletonList("Test CSV Data"));
+        // Mock the export service to write some CSV data
+        when(mockGoodReadsExportService.writeExportInGoodReadsFormat(eq(testUser), any(Writer.class)))
+                .thenAnswer(invocation -> {
+                    Writer writer = invocation.getArgument(1);
+                    writer.write("Test CSV Data");
+                    writer.flush();
+                    return 1L;
+                });
 
         // Mock getOutputStream to return a mock that throws IOException on write
         when(mockResponse.getOutputStream()).thenReturn(mockOutputStream);
-        // Since there's only one CSV row, it will use print() not println()
         doThrow(new IOException("Test IOException - write error"))
-                .when(mockOutputStream).print(anyString());
+                .when(mockOutputStream).write(any(byte[].class), anyInt(), anyInt());
 
         FeedsController controller = new FeedsController(
                 mockSiteRssFeed,
@@ -291,7 +321,7 @@ class FeedsControllerTest extends IntegrationTest {
 
         // Then - Verify error handling
         verify(mockResponse, times(1)).getOutputStream();
-        verify(mockOutputStream, times(1)).print("Test CSV Data");
+        verify(mockOutputStream, times(1)).write(any(byte[].class), anyInt(), anyInt());
         verify(mockResponse, times(1)).sendError(HttpStatus.SC_INTERNAL_SERVER_ERROR);
     }
 }
@@ -1,10 +1,17 @@
 package com.aidanwhiteley.books.controller.jwt;
 
 import com.aidanwhiteley.books.domain.User;
+import com.aidanwhiteley.books.repository.UserRepository;
+import com.aidanwhiteley.books.util.BookTestUtils;
+import jakarta.servlet.http.Cookie;
 import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 class JwtAuthenticationServiceTest {
 
@@ -18,7 +25,7 @@ class JwtAuthenticationServiceTest {
         JwtUtils jwtUtils = new JwtUtils();
         jwtUtils.setSecretKey(JwtUtils.createRandomBase64EncodedSecretKey());
 
-        JwtAuthenticationService theService = new JwtAuthenticationService(jwtUtils);
+        JwtAuthenticationService theService = new JwtAuthenticationService(jwtUtils, null);
         theService.setCookieExpirySeconds(Integer.MAX_VALUE);
         theService.setCookieOverHttpsOnly(true);
         theService.setCookieAccessedByHttpOnly(true);
@@ -54,4 +61,49 @@ class JwtAuthenticationServiceTest {
         assertNotNull(cookiePath);
 
     }
+
+    @Test
+    void testUserOnlyCheckedOnceRevalidationIsDue() {
+        UserRepository userRepository = mock(UserRepository.class);
+        JwtUtils jwtUtils = new JwtUtils();
+        jwtUtils.setSecretKey(JwtUtils.createRandomBase64EncodedSecretKey());
+        jwtUtils.setIssuer("A test issuer");
+        jwtUtils.setExpiryInMilliSeconds(60 * 1000);
+
+        JwtAuthenticationService theService = new JwtAuthenticationService(jwtUtils, userRepository);
+        theService.setJwtCookiePath("/");
+
+        User editor = BookTestUtils.getEditorTestUser();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(JwtAuthenticationService.JWT_COOKIE_NAME, jwtUtils.createTokenForUser(editor)));
+
+        // Within the revalidation interval the token is trusted
+        theService.setUserRevalidationIntervalSeconds(60);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(theService.readAndValidateAuthenticationData(request, response).isAuthenticated());
+        assertTrue(response.getHeaders("Set-Cookie").isEmpty());
+        verifyNoInteractions(userRepository);
+
+        // Once due, the user's current roles are read and the cookie reissued
+        User promotedEditor = BookTestUtils.getEditorTestUser();
+        promotedEditor.addRole(User.Role.ROLE_ADMIN);
+        when(userRepository.findAllByAuthenticationServiceIdAndAuthProvider(editor.getAuthenticationServiceId(),
+                editor.getAuthProvider().toString())).thenReturn(List.of(promotedEditor));
+        theService.setUserRevalidationIntervalSeconds(-1);
+        response = new MockHttpServletResponse();
+        JwtAuthentication auth = theService.readAndValidateAuthenticationData(request, response);
+
+        assertEquals(User.Role.ROLE_ADMIN, auth.getUser().getHighestRole());
+        String reissuedCookie = response.getHeader("Set-Cookie");
+        assertNotNull(reissuedCookie);
+        String reissuedToken = reissuedCookie.substring(JwtAuthenticationService.JWT_COOKIE_NAME.length() + 1,
+                reissuedCookie.indexOf(';'));
+        assertEquals(User.Role.ROLE_ADMIN, jwtUtils.getUserFromToken(reissuedToken).getHighestRole());
+
+        // A user that no longer exists is no longer authenticated
+        when(userRepository.findAllByAuthenticationServiceIdAndAuthProvider(anyString(), anyString())).thenReturn(List.of());
+        response = new MockHttpServletResponse();
+        assertNull(theService.readAndValidateAuthenticationData(request, response));
+        assertEquals(0, response.getCookie(JwtAuthenticationService.JWT_COOKIE_NAME).getMaxAge());
+    }
 }
@@ -10,6 +10,8 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class JwtUtilsTest {
@@ -33,6 +35,28 @@ class JwtUtilsTest {
         assertEquals(testUser.getFullName(), userFromToken.getFullName());
     }
 
+    @Test
+    void testRevalidatedTokenHasCurrentUserDetails() throws InterruptedException {
+        JwtUtils jwt = new JwtUtils();
+
+        jwt.setIssuer("A test issuer");
+        jwt.setExpiryInMilliSeconds(60 * 1000);
+        jwt.setSecretKey(JwtUtils.createRandomBase64EncodedSecretKey());
+
+        User testUser = BookTestUtils.getEditorTestUser();
+        String token = jwt.createTokenForUser(testUser);
+        Instant lastChecked = jwt.getLastCheckedFromToken(token);
+        assertFalse(lastChecked.isAfter(Instant.now()));
+
+        // The lastChecked claim is held to the second
+        Thread.sleep(1100);
+        testUser.addRole(User.Role.ROLE_ADMIN);
+        String revalidatedToken = jwt.createRevalidatedTokenForUser(testUser, token);
+
+        assertTrue(jwt.getLastCheckedFromToken(revalidatedToken).isAfter(lastChecked));
+        assertEquals(User.Role.ROLE_ADMIN, jwt.getUserFromToken(revalidatedToken).getHighestRole());
+    }
+
     @Test
     void testTamperedWithToken() {
         JwtUtils jwt = new JwtUtils();
@@ -73,4 +97,38 @@ class JwtUtilsTest {
 
         Assertions.assertThrows(ExpiredJwtException.class, () -> jwt.getUserFromToken(token));
     }
+
+    @Test
+    void testCachedTokenReturnsIndependentUsers() {
+        JwtUtils jwt = new JwtUtils();
+
+        jwt.setIssuer("A test issuer");
+        jwt.setExpiryInMilliSeconds(60 * 1000);
+        jwt.setSecretKey(JwtUtils.createRandomBase64EncodedSecretKey());
+
+        User testUser = BookTestUtils.getTestUser();
+        String token = jwt.createTokenForUser(testUser);
+
+        User firstUser = jwt.getUserFromToken(token);
+        firstUser.addRole(User.Role.ROLE_ADMIN);
+        User secondUser = jwt.getUserFromToken(token);
+
+        assertEquals(testUser.getFullName(), secondUser.getFullName());
+        assertEquals(testUser.getRoles(), secondUser.getRoles());
+    }
+
+    @Test
+    void testChangedSecretKeyInvalidatesCachedTokens() {
+        JwtUtils jwt = new JwtUtils();
+
+        jwt.setIssuer("A test issuer");
+        jwt.setExpiryInMilliSeconds(60 * 1000);
+        jwt.setSecretKey(JwtUtils.createRandomBase64EncodedSecretKey());
+
+        String token = jwt.createTokenForUser(BookTestUtils.getTestUser());
+        assertNotNull(jwt.getUserFromToken(token));
+
+        jwt.setSecretKey(JwtUtils.createRandomBase64EncodedSecretKey());
+        assertThrows(SecurityException.class, () -> jwt.getUserFromToken(token));
+    }
 }
@@ -0,0 +1,116 @@
+package com.aidanwhiteley.books.domain.audit;
+
+import com.aidanwhiteley.books.controller.dtos.ClientRoles;
+import com.aidanwhiteley.books.controller.jwt.JwtAuthentication;
+import com.aidanwhiteley.books.domain.Owner;
+import com.aidanwhiteley.books.domain.User;
+import com.aidanwhiteley.books.repository.UserRepository;
+import com.aidanwhiteley.books.util.BookTestUtils;
+import com.aidanwhiteley.books.util.IntegrationTest;
+import com.aidanwhiteley.books.util.JwtAuthenticationUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BookAuditorTest extends IntegrationTest {
+
+    private static final String ORIGINAL_NAME = "Anne Auditor";
+    private static final String CHANGED_NAME = "Anne Changed";
+
+    @Autowired
+    private BookAuditor bookAuditor;
+
+    @Autowired
+    private JwtAuthenticationUtils jwtAuthenticationUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private User user;
+
+    private JwtAuthentication auth;
+
+    @BeforeEach
+    void setUp() {
+        user = BookTestUtils.getEditorTestUser();
+        user.setAuthenticationServiceId(UUID.randomUUID().toString());
+        user.setFullName(ORIGINAL_NAME);
+        user = userRepository.insert(user);
+
+        auth = new JwtAuthentication(user);
+        SecurityContextHolder.getContext().setAuthentication(auth);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void ownerIsCachedUntilUserIsSaved() {
+        assertEquals(ORIGINAL_NAME, currentAuditor().getFullName());
+
+        // A change that bypasses the repository isn't seen until the cache entry expires
+        renameUserWithoutEviction();
+        assertEquals(ORIGINAL_NAME, currentAuditor().getFullName());
+
+        user.setFullName(CHANGED_NAME);
+        userRepository.save(user);
+        assertEquals(CHANGED_NAME, currentAuditor().getFullName());
+    }
+
+    @Test
+    void ownerCacheIsEmptiedByRoleChangesAndDeletes() {
+        assertEquals(ORIGINAL_NAME, currentAuditor().getFullName());
+
+        renameUserWithoutEviction();
+        userRepository.updateUserRoles(new ClientRoles(user.getId(), false, true));
+        assertEquals(CHANGED_NAME, currentAuditor().getFullName());
+
+        User anotherUser = BookTestUtils.getADifferentEditorTestUser();
+        anotherUser.setAuthenticationServiceId(UUID.randomUUID().toString());
+        anotherUser = userRepository.insert(anotherUser);
+
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(user.getId())),
+                new Update().set("fullName", ORIGINAL_NAME), User.class);
+        userRepository.deleteById(anotherUser.getId());
+        assertEquals(ORIGINAL_NAME, currentAuditor().getFullName());
+    }
+
+    @Test
+    void userAlreadyReadForTheRequestIsUsed() {
+        assertEquals(ORIGINAL_NAME, currentAuditor().getFullName());
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        renameUserWithoutEviction();
+        jwtAuthenticationUtils.extractUserFromPrincipal(auth, false);
+
+        assertEquals(CHANGED_NAME, currentAuditor().getFullName());
+    }
+
+    private Owner currentAuditor() {
+        return bookAuditor.getCurrentAuditor().orElseThrow();
+    }
+
+    private void renameUserWithoutEviction() {
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(user.getId())),
+                new Update().set("fullName", CHANGED_NAME), User.class);
+    }
+}
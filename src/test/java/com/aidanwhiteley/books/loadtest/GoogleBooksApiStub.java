@@ -0,0 +1,35 @@
+package com.aidanwhiteley.books.loadtest;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+
+import java.io.File;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Serves the WireMock mappings used by the tests (src/test/resources/mappings) so that a load test never calls the
+ * real Google Books API. The application under test must be started with wiremock.server.port set to the same port
+ * and with a profile that points the Google Books API URLs at localhost:${wiremock.server.port} (e.g. the
+ * dev-mongo-java-server profile).
+ */
+class GoogleBooksApiStub {
+
+    private static final String STUB_FILES_DIRECTORY = "src/test/resources";
+
+    private final WireMockServer wireMockServer;
+
+    GoogleBooksApiStub(int port) {
+        this.wireMockServer = new WireMockServer(options()
+                .port(port)
+                .usingFilesUnderDirectory(new File(STUB_FILES_DIRECTORY).getAbsolutePath())
+                .containerThreads(50));
+    }
+
+    void start() {
+        wireMockServer.start();
+    }
+
+    void stop() {
+        wireMockServer.stop();
+    }
+}
@@ -0,0 +1,212 @@
+package com.aidanwhiteley.books.loadtest;
+
+import com.aidanwhiteley.books.controller.jwt.JwtUtils;
+import com.aidanwhiteley.books.util.BookTestUtils;
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.OpenInjectionStep;
+import io.gatling.javaapi.core.ScenarioBuilder;
+import io.gatling.javaapi.core.Simulation;
+import io.gatling.javaapi.http.HttpProtocolBuilder;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.aidanwhiteley.books.controller.BookControllerHtmx.HX_REQUEST;
+import static com.aidanwhiteley.books.controller.BookSecureControllerHtmx.HX_PUSH_URL;
+import static com.aidanwhiteley.books.controller.jwt.JwtAuthenticationService.JWT_COOKIE_NAME;
+import static com.aidanwhiteley.books.controller.jwt.JwtAuthenticationService.XSRF_COOKIE_NAME;
+import static io.gatling.javaapi.core.CoreDsl.*;
+import static io.gatling.javaapi.http.HttpDsl.*;
+
+/**
+ * A load test that models the traffic the site actually gets rather than repeatedly requesting one page.
+ * <p>
+ * Four scenarios run at the same time, each ramping up to a share of loadtest.peakUsersPerSec new users
+ * per second and then holding that rate:
+ * <ul>
+ *     <li>readers (70%) - the home page and its swiper, recent reviews, finding by author / genre / rating, searching
+ *     and reading reviews, as served to the HTMX front end</li>
+ *     <li>API clients (15%) - pages of books and single books from the JSON API</li>
+ *     <li>feed readers (10%) - conditional requests for the RSS feed</li>
+ *     <li>reviewers (5%) - logged on users (with a JWT minted here) who search Google Books, create and update reviews
+ *     and comment on them</li>
+ * </ul>
+ * The Google Books API is stubbed using the WireMock mappings from the tests - see {@link GoogleBooksApiStub}.
+ * Raise loadtest.peakUsersPerSec between runs to find the rate at which response times start to climb.
+ */
+@SuppressWarnings("this-escape")
+public class WorkloadSimulation extends Simulation {
+
+    private static final String BASE_URL = System.getProperty("loadtest.baseUrl", "http://localhost:8080");
+    private static final double PEAK_USERS_PER_SEC = Double.parseDouble(System.getProperty("loadtest.peakUsersPerSec", "10"));
+    private static final int RAMP_SECONDS = Integer.getInteger("loadtest.rampSeconds", 60);
+    private static final int HOLD_SECONDS = Integer.getInteger("loadtest.holdSeconds", 120);
+    // Set to 0 if the Google Books API stub is already running elsewhere
+    private static final int GOOGLE_BOOKS_STUB_PORT = Integer.getInteger("loadtest.googleBooksStubPort", 8883);
+    // Must match books.jwt.secretKey of the application under test - this default is the one in the dev profiles
+    private static final String JWT_SECRET_KEY = System.getProperty("loadtest.jwtSecretKey",
+            "wMYg4eYtigrQRSrqpI4ugQbK6BwutoAzXZ5jmK4nrybeOYkMbJrScOHmMQvld0RjHWWfyCx+foRk2lL7XbGQMA==");
+    private static final String JWT_ISSUER = System.getProperty("loadtest.jwtIssuer", "CloudyBookClub");
+    // Set to false when running against mongo-java-server which doesn't support the full text index searches use
+    private static final boolean SEARCH = Boolean.parseBoolean(System.getProperty("loadtest.search", "true"));
+
+    // These match the stubbed searches in src/test/resources/mappings
+    private static final String GOOGLE_BOOKS_TITLE = "Design Patterns";
+    private static final String GOOGLE_BOOKS_AUTHOR = "Gamma";
+    private static final String GOOGLE_BOOK_ID = "6oHuKQe3TjQC";
+
+    private final GoogleBooksApiStub googleBooksApiStub = GOOGLE_BOOKS_STUB_PORT > 0 ?
+            new GoogleBooksApiStub(GOOGLE_BOOKS_STUB_PORT) : null;
+
+    private final HttpProtocolBuilder httpProtocol = http
+            .baseUrl(BASE_URL)
+            .acceptHeader("text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+            .acceptLanguageHeader("en-GB,en;q=0.5")
+            .acceptEncodingHeader("gzip, deflate")
+            .userAgentHeader("Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:128.0) Gecko/20100101 Firefox/128.0");
+
+    private final ChainBuilder pickABook = exec(http("api_books_for_ids")
+            .get("/api/books/?page=0&size=30")
+            .header("Accept", "application/json")
+            .check(status().is(200))
+            .check(jsonPath("$.content[*].id").findRandom().saveAs("bookId"))
+            .check(jsonPath("$.content[*].author").findRandom().saveAs("author"))
+            .check(jsonPath("$.content[*].genre").findRandom().saveAs("genre")));
+
+    private final ChainBuilder readReviews = exec(
+            http("home").get("/").check(status().is(200)),
+            http("home_swiper").get("/").header(HX_REQUEST, "true").check(status().is(200)))
+            .pause(1, 3)
+            .exec(pickABook)
+            .repeat(3, "recentPageIndex").on(
+                    exec(session -> session.set("recentPage", session.getInt("recentPageIndex") + 1))
+                            .exec(http("recent").get("/recent?pagenum=#{recentPage}").header(HX_REQUEST, "true")
+                            .check(status().is(200)))
+                            .pause(1, 2))
+            .exec(http("book_review").get("/bookreview?bookId=#{bookId}").check(status().in(200, 304)))
+            .pause(2, 5)
+            .randomSwitch().on(
+                    percent(40.0).then(exec(http("find_by_author")
+                            .get("/find").queryParam("author", "#{author}").queryParam("pagenum", "1")
+                            .header(HX_REQUEST, "true").check(status().is(200)))),
+                    percent(30.0).then(exec(http("find_by_genre")
+                            .get("/find").queryParam("genre", "#{genre}").queryParam("pagenum", "1")
+                            .header(HX_REQUEST, "true").check(status().is(200)))),
+                    percent(30.0).then(feed(listFeeder(List.of(
+                            Map.<String, Object>of("rating", "great"), Map.<String, Object>of("rating", "good"),
+                            Map.<String, Object>of("rating", "ok"), Map.<String, Object>of("rating", "poor"),
+                            Map.<String, Object>of("rating", "terrible"))).random())
+                            .exec(http("find_by_rating")
+                                    .get("/find?rating=#{rating}&pagenum=1").header(HX_REQUEST, "true")
+                                    .check(status().is(200)))))
+            .pause(1, 3)
+            .doIf(session -> SEARCH).then(
+                    feed(listFeeder(List.of(
+                            Map.<String, Object>of("term", "novel"), Map.<String, Object>of("term", "history"),
+                            Map.<String, Object>of("term", "great read"), Map.<String, Object>of("term", "thriller"),
+                            Map.<String, Object>of("term", "science"))).random())
+                            .exec(http("search").get("/search").queryParam("term", "#{term}").check(status().is(200)))
+                            .pause(1, 3))
+            // A book already viewed so the browser cache revalidates it
+            .exec(http("book_review_again").get("/bookreview?bookId=#{bookId}").check(status().in(200, 304)));
+
+    private final ChainBuilder callTheApi = exec(pickABook)
+            .pause(1)
+            .exec(http("api_book").get("/api/books/#{bookId}").header("Accept", "application/json")
+                    .check(status().is(200)))
+            .exec(http("api_books_page_2").get("/api/books/?page=1&size=30").header("Accept", "application/json")
+                    .check(status().is(200)));
+
+    // The feed is requested repeatedly so that, as with real feed readers, most requests are conditional
+    private final ChainBuilder readTheFeed = repeat(3).on(
+            exec(http("rss_feed").get("/feeds/rss").check(status().in(200, 304)))
+                    .pause(5, 10));
+
+    private final ChainBuilder writeReviews = exec(session -> session.set("jwt", mintJwt()))
+            .exec(addCookie(Cookie(JWT_COOKIE_NAME, "#{jwt}")))
+            // Any response sets the XSRF cookie that must be echoed in a header on updates
+            .exec(http("create_review_page").get("/createreview").check(status().is(200)))
+            .exec(getCookieValue(CookieKey(XSRF_COOKIE_NAME).saveAs("xsrfToken")))
+            .pause(2, 5)
+            .exec(http("google_books_search")
+                    .get("/googlebooks").queryParam("title", GOOGLE_BOOKS_TITLE).queryParam("author", GOOGLE_BOOKS_AUTHOR)
+                    .queryParam("index", "0").header(HX_REQUEST, "true")
+                    .check(status().is(200)))
+            .pause(5, 15)
+            .exec(http("create_review").post("/createreview")
+                    .header(HX_REQUEST, "true").header("X-XSRF-TOKEN", "#{xsrfToken}")
+                    .formParam("title", GOOGLE_BOOKS_TITLE).formParam("author", GOOGLE_BOOKS_AUTHOR)
+                    .formParam("genre", "Computing").formParam("rating", "GOOD")
+                    .formParam("summary", "A load test review of a classic book about design patterns")
+                    .formParam("index", "0").formParam("googleBookId", GOOGLE_BOOK_ID)
+                    .check(status().is(200))
+                    .check(header(HX_PUSH_URL).transform(url -> url.substring(url.indexOf('=') + 1)).saveAs("newBookId")))
+            .exec(getCookieValue(CookieKey(XSRF_COOKIE_NAME).saveAs("xsrfToken")))
+            .pause(2, 5)
+            .exec(http("update_review_page").get("/updatereview/#{newBookId}").check(status().is(200)))
+            .exec(getCookieValue(CookieKey(XSRF_COOKIE_NAME).saveAs("xsrfToken")))
+            .pause(5, 10)
+            .exec(http("update_review").post("/updatereview")
+                    .header(HX_REQUEST, "true").header("X-XSRF-TOKEN", "#{xsrfToken}")
+                    .formParam("bookId", "#{newBookId}")
+                    .formParam("title", GOOGLE_BOOKS_TITLE).formParam("author", GOOGLE_BOOKS_AUTHOR)
+                    .formParam("genre", "Computing").formParam("rating", "GREAT")
+                    .formParam("summary", "An updated load test review of a classic book about design patterns")
+                    .formParam("index", "0").formParam("googleBookId", GOOGLE_BOOK_ID)
+                    .check(status().is(200)))
+            .exec(pickABook)
+            .repeat(2).on(
+                    exec(getCookieValue(CookieKey(XSRF_COOKIE_NAME).saveAs("xsrfToken")))
+                            .pause(3, 8)
+                            .exec(http("add_comment").post("/addcomment")
+                                    .header(HX_REQUEST, "true").header("X-XSRF-TOKEN", "#{xsrfToken}")
+                                    .formParam("bookId", "#{bookId}")
+                                    .formParam("comment", "A load test comment on the review")
+                                    .check(status().is(200))));
+
+    private final ScenarioBuilder readers = scenario("Readers").exec(readReviews);
+    private final ScenarioBuilder apiClients = scenario("API clients").exec(callTheApi);
+    private final ScenarioBuilder feedReaders = scenario("Feed readers").exec(readTheFeed);
+    private final ScenarioBuilder reviewers = scenario("Reviewers").exec(writeReviews);
+
+    {
+        setUp(
+                readers.injectOpen(arrivals(0.70)),
+                apiClients.injectOpen(arrivals(0.15)),
+                feedReaders.injectOpen(arrivals(0.10)),
+                reviewers.injectOpen(arrivals(0.05))
+        ).protocols(httpProtocol)
+                .assertions(global().failedRequests().percent().lt(1.0));
+    }
+
+    @Override
+    public void before() {
+        if (googleBooksApiStub != null) {
+            googleBooksApiStub.start();
+        }
+    }
+
+    @Override
+    public void after() {
+        if (googleBooksApiStub != null) {
+            googleBooksApiStub.stop();
+        }
+    }
+
+    private static OpenInjectionStep[] arrivals(double shareOfPeak) {
+        double peak = PEAK_USERS_PER_SEC * shareOfPeak;
+        return new OpenInjectionStep[]{
+                rampUsersPerSec(0).to(peak).during(RAMP_SECONDS),
+                constantUsersPerSec(peak).during(HOLD_SECONDS).randomized()
+        };
+    }
+
+    // The user is one of the users in src/main/resources/sample_data so is found when the JWT is checked
+    private static String mintJwt() {
+        JwtUtils jwtUtils = new JwtUtils();
+        jwtUtils.setSecretKey(JWT_SECRET_KEY);
+        jwtUtils.setIssuer(JWT_ISSUER);
+        jwtUtils.setExpiryInMilliSeconds(60 * 60 * 1000);
+        return jwtUtils.createTokenForUser(BookTestUtils.getTestUser());
+    }
+}
@@ -5,11 +5,21 @@ import com.aidanwhiteley.books.util.BookTestUtils;
 import com.aidanwhiteley.books.domain.Book;
 import com.aidanwhiteley.books.domain.Comment;
 import com.aidanwhiteley.books.domain.Owner;
+import com.aidanwhiteley.books.domain.User;
+import com.aidanwhiteley.books.domain.googlebooks.Item;
+import com.aidanwhiteley.books.repository.dtos.BookCursorQuery;
+import com.aidanwhiteley.books.repository.dtos.BookFacets;
 import com.aidanwhiteley.books.repository.dtos.BooksByAuthor;
 import com.aidanwhiteley.books.repository.dtos.BooksByGenre;
 import com.aidanwhiteley.books.repository.dtos.BooksByRating;
 import com.aidanwhiteley.books.repository.dtos.BooksByReader;
+import com.aidanwhiteley.books.repository.dtos.BookSummary;
+import com.aidanwhiteley.books.repository.dtos.BookVersion;
+import com.aidanwhiteley.books.repository.dtos.CursorPage;
+import com.aidanwhiteley.books.repository.dtos.UpdatedBook;
+import com.aidanwhiteley.books.repository.exceptions.CommentsStorageException;
 import com.aidanwhiteley.books.util.IntegrationTest;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
@@ -18,10 +28,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,6 +55,9 @@ public class BookRepositoryTest extends IntegrationTest {
     private static final String ANOTHER_COMMENT = "Especially when there is more than one of them";
     private static final String COMMENT_REMOVER = "Ilie Nastasie";
 
+    private static final String GOOGLE_BOOK_ID = "AGoogleBookId";
+    private static final Item NO_GOOGLE_BOOK_DETAILS = null;
+
     private static final int PAGE = 0;
     private static final int PAGE_SIZE = 10;
 
@@ -44,6 +69,9 @@ public class BookRepositoryTest extends IntegrationTest {
     @Autowired
     private Environment environment;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @BeforeEach
     public void setUp() {
         bookRepository.insert(BookTestUtils.createTestBook());
@@ -60,6 +88,84 @@ public class BookRepositoryTest extends IntegrationTest {
         assertNotNull(books.getContent().getFirst().getId());
     }
 
+    @Test
+    void findSummariesByAuthor() {
+        PageRequest pageObj = PageRequest.of(PAGE, PAGE_SIZE);
+        Page<BookSummary> books = bookRepository.findSummariesByAuthorOrderByCreatedDateTimeDesc(pageObj, BookTestUtils.DR_ZEUSS);
+        assertFalse(books.getContent().isEmpty());
+
+        BookSummary summary = books.getContent().getFirst();
+        assertEquals(BookTestUtils.DR_ZEUSS, summary.getAuthor());
+        assertEquals(BookTestUtils.J_UNIT_TESTING_FOR_BEGINNERS, summary.getTitle());
+        assertEquals(BookTestUtils.COMPUTING, summary.getGenre());
+        assertEquals(Book.Rating.POOR, summary.getRating());
+        assertNotNull(summary.getId());
+        assertNotNull(summary.getCreatedDateTime());
+    }
+
+    @Test
+    void findSummariesOnlyLoadsImageLinksFromGoogleBookDetails() {
+        PageRequest pageObj = PageRequest.of(PAGE, PAGE_SIZE);
+        Page<BookSummary> books = bookRepository.findSummariesByRatingOrderByCreatedDateTimeDesc(pageObj, Book.Rating.GREAT);
+        assertFalse(books.getContent().isEmpty());
+
+        BookSummary withImage = books.getContent().stream().filter(BookSummary::hasThumbnailImage).findFirst()
+                .orElseThrow(() -> new IllegalStateException("Expected sample data to hold a book with a thumbnail"));
+        assertNotNull(withImage.getGoogleBookDetails().getVolumeInfo().getImageLinks().getThumbnail());
+        assertNull(withImage.getGoogleBookDetails().getVolumeInfo().getDescription());
+        assertNull(withImage.getGoogleBookDetails().getAccessInfo());
+    }
+
+    @Test
+    void findSummariesInCreatedDateOrder() {
+        PageRequest pageObj = PageRequest.of(PAGE, PAGE_SIZE);
+        Page<BookSummary> summaries = bookRepository.findSummariesByOrderByCreatedDateTimeDesc(pageObj);
+        Page<Book> books = bookRepository.findAllByOrderByCreatedDateTimeDesc(pageObj);
+
+        assertEquals(books.getTotalElements(), summaries.getTotalElements());
+        assertEquals(books.getContent().stream().map(Book::getId).toList(),
+                summaries.getContent().stream().map(BookSummary::getId).toList());
+    }
+
+    @Test
+    void findSummariesByCursorMatchesPageOrder() {
+        final int cursorPageSize = 3;
+        Page<Book> allBooks = bookRepository.findAllByOrderByCreatedDateTimeDesc(PageRequest.of(0, 1000));
+
+        List<String> idsByCursor = new ArrayList<>();
+        String cursor = "";
+        do {
+            CursorPage<BookSummary> page = bookRepository.findSummariesByCursor(
+                    BookCursorQuery.builder().cursor(cursor).size(cursorPageSize).build());
+            assertTrue(page.getContent().size() <= cursorPageSize);
+            assertNull(page.getTotalElements());
+            page.getContent().forEach(b -> idsByCursor.add(b.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // Books can share a created date time so compare as sets as well as checking there are no duplicates
+        assertEquals(allBooks.getTotalElements(), idsByCursor.size());
+        assertEquals(allBooks.getContent().stream().map(Book::getId).sorted().toList(),
+                idsByCursor.stream().sorted().toList());
+    }
+
+    @Test
+    void findBooksByCursorWithFilterAndTotal() {
+        CursorPage<Book> page = bookRepository.findBooksByCursor(BookCursorQuery.builder()
+                .size(PAGE_SIZE).includeTotal(true).author(BookTestUtils.DR_ZEUSS).build());
+
+        assertFalse(page.getContent().isEmpty());
+        assertTrue(page.getContent().stream().allMatch(b -> BookTestUtils.DR_ZEUSS.equals(b.getAuthor())));
+        assertEquals(bookRepository.findAllByAuthorOrderByCreatedDateTimeDesc(PageRequest.of(PAGE, PAGE_SIZE),
+                BookTestUtils.DR_ZEUSS).getTotalElements(), page.getTotalElements());
+    }
+
+    @Test
+    void findByInvalidCursor() {
+        BookCursorQuery query = BookCursorQuery.builder().cursor("not a cursor").size(PAGE_SIZE).build();
+        assertThrows(IllegalArgumentException.class, () -> bookRepository.findSummariesByCursor(query));
+    }
+
     @Test
     void countBooksByGenre() {
         List<BooksByGenre> list = bookRepository.countBooksByGenre();
@@ -89,6 +195,48 @@ public class BookRepositoryTest extends IntegrationTest {
         assertTrue(list.getFirst().getCountOfBooks() > 0);
     }
 
+    @Test
+    void countBooksByGenreReflectsCreatesUpdatesAndDeletes() {
+        final String genre = "Counted genre test";
+        final String updatedGenre = "Updated counted genre test";
+        assertEquals(0, countOfBooksInGenre(genre));
+
+        Book savedBook = bookRepository.insert(BookTestUtils.createTestBook());
+        savedBook.setGenre(genre);
+        bookRepository.save(savedBook);
+        assertEquals(1, countOfBooksInGenre(genre), "Cached genre counts should have been cleared when the book was updated");
+
+        Book anotherBook = BookTestUtils.createTestBook();
+        anotherBook.setGenre(genre);
+        anotherBook = bookRepository.insert(anotherBook);
+        assertEquals(2, countOfBooksInGenre(genre));
+
+        anotherBook.setGenre(updatedGenre);
+        bookRepository.save(anotherBook);
+        assertEquals(1, countOfBooksInGenre(genre));
+        assertEquals(1, countOfBooksInGenre(updatedGenre));
+
+        // Targeted updates of the review fields are counted as well as whole book saves
+        Book review = Book.builder().id(anotherBook.getId()).title(anotherBook.getTitle()).
+                author(anotherBook.getAuthor()).genre(genre).summary(anotherBook.getSummary()).
+                rating(anotherBook.getRating()).build();
+        bookRepository.updateReviewFields(review, BookTestUtils.getTestUser(), NO_GOOGLE_BOOK_DETAILS);
+        assertEquals(2, countOfBooksInGenre(genre));
+        assertTrue(bookRepository.countBooksByGenre().stream().noneMatch(g -> updatedGenre.equals(g.getGenre())),
+                "Genres with no books should not be listed");
+
+        bookRepository.deleteById(savedBook.getId());
+        assertEquals(1, countOfBooksInGenre(genre));
+
+        bookRepository.deleteBookAndComments(anotherBook.getId());
+        assertEquals(0, countOfBooksInGenre(genre));
+    }
+
+    private long countOfBooksInGenre(String genre) {
+        return bookRepository.countBooksByGenre().stream().filter(g -> genre.equals(g.getGenre()))
+                .mapToLong(BooksByGenre::getCountOfBooks).sum();
+    }
+
     @Test
     void addCommentToBook() {
         Book book = BookTestUtils.createTestBook();
@@ -97,11 +245,26 @@ public class BookRepositoryTest extends IntegrationTest {
 
         Comment comment = new Comment(A_COMMENT, new Owner());
 
-        // Returned book holds just the Book's comments - no other data other than the book id.
+        // Returned book holds just the Book's comments - no other data other than the book id and comment count.
         Book updatedBook = bookRepository.addCommentToBook(savedBook.getId(), comment);
 
         assertEquals(1, updatedBook.getComments().size());
         assertEquals(A_COMMENT, updatedBook.getComments().getFirst().getCommentText());
+        assertEquals(savedBook.getId(), updatedBook.getComments().getFirst().getBookId());
+        assertEquals(1, updatedBook.getCommentCount());
+        assertNull(updatedBook.getTitle());
+
+        // The comments aren't read with the book itself
+        assertTrue(bookRepository.findById(savedBook.getId()).orElseThrow().getComments().isEmpty());
+        assertEquals(1, bookRepository.findBookWithCommentsById(savedBook.getId()).orElseThrow().getComments().size());
+    }
+
+    @Test
+    void addCommentToMissingBookLeavesNoComment() {
+        Comment comment = new Comment(A_COMMENT, new Owner());
+
+        assertThrows(CommentsStorageException.class, () -> bookRepository.addCommentToBook("notABookId", comment));
+        assertFalse(mongoTemplate.exists(new Query(Criteria.where("bookId").is("notABookId")), Comment.class));
     }
 
     @Test
@@ -115,15 +278,15 @@ public class BookRepositoryTest extends IntegrationTest {
         comment = new Comment(ANOTHER_COMMENT, new Owner());
         bookRepository.addCommentToBook(savedBook.getId(), comment);
 
-        Optional<Book> oBook = bookRepository.findById(savedBook.getId());
+        Optional<Book> oBook = bookRepository.findBookWithCommentsById(savedBook.getId());
         Book updatedBook = null;
         if (oBook.isPresent()) {
-            //noinspection OptionalGetWithoutIsPresent
-            updatedBook = bookRepository.findById(savedBook.getId()).get();
+            updatedBook = oBook.get();
         } else {
             fail("Optional not expected to be empty");
         }
         assertEquals(2, updatedBook.getComments().size());
+        assertEquals(2, updatedBook.getCommentCount());
 
         // Returned Book holds just the updated comments
         updatedBook = bookRepository.removeCommentFromBook(savedBook.getId(),
@@ -134,6 +297,290 @@ public class BookRepositoryTest extends IntegrationTest {
         assertEquals("", updatedBook.getComments().getFirst().getCommentText());
         assertTrue(updatedBook.getComments().getFirst().isDeleted());
         assertEquals(COMMENT_REMOVER, updatedBook.getComments().getFirst().getDeletedBy());
+        assertEquals(1, updatedBook.getCommentCount());
+
+        // Removing the comment again doesn't change the count
+        updatedBook = bookRepository.removeCommentFromBook(savedBook.getId(),
+                updatedBook.getComments().getFirst().getId(), COMMENT_REMOVER);
+        assertEquals(1, updatedBook.getCommentCount());
+    }
+
+    @Test
+    void parallelCommentsAreAllStoredAndCounted() throws Exception {
+        Book savedBook = bookRepository.insert(BookTestUtils.createTestBook());
+        final int comments = 20;
+
+        List<Book> results = runInParallel(comments, i ->
+                bookRepository.addCommentToBook(savedBook.getId(), new Comment(A_COMMENT + i, new Owner())));
+
+        // Each post sees its own comment and a count that includes it
+        for (int i = 0; i < comments; i++) {
+            final String commentText = A_COMMENT + i;
+            Book result = results.get(i);
+            assertTrue(result.getComments().stream().anyMatch(c -> c.getCommentText().equals(commentText)));
+            assertTrue(result.getCommentCount() >= 1 && result.getCommentCount() <= comments);
+        }
+
+        Book book = bookRepository.findCommentsForBook(savedBook.getId(), PageRequest.of(0, comments + 1)).orElseThrow();
+        assertEquals(comments, book.getCommentCount());
+        assertEquals(comments, book.getComments().size());
+        assertEquals(comments, results.stream().map(Book::getCommentCount).distinct().count(),
+                "Every post should have seen a different count");
+    }
+
+    @Test
+    void parallelRemovalsOfACommentOnlyCountOnce() throws Exception {
+        Book savedBook = bookRepository.insert(BookTestUtils.createTestBook());
+        bookRepository.addCommentToBook(savedBook.getId(), new Comment(A_COMMENT, new Owner()));
+        String commentId = bookRepository.addCommentToBook(savedBook.getId(), new Comment(ANOTHER_COMMENT, new Owner()))
+                .getComments().getFirst().getId();
+
+        runInParallel(10, i -> bookRepository.removeCommentFromBook(savedBook.getId(), commentId, COMMENT_REMOVER));
+
+        assertEquals(1, bookRepository.findCommentsForBook(savedBook.getId()).getCommentCount());
+    }
+
+    private static <T> List<T> runInParallel(int tasks, IntFunction<T> task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(tasks)) {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                final int taskNumber = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.apply(taskNumber);
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        }
+    }
+
+    @Test
+    void findCommentsForBookPagesMostRecentFirst() {
+        Book savedBook = bookRepository.insert(BookTestUtils.createTestBook());
+        LocalDateTime entered = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < 5; i++) {
+            bookRepository.addCommentToBook(savedBook.getId(), new Comment(A_COMMENT + i, new Owner(), entered.plusMinutes(i)));
+        }
+
+        Book firstPage = bookRepository.findCommentsForBook(savedBook.getId(), PageRequest.of(0, 2)).orElseThrow();
+        assertEquals(List.of(A_COMMENT + 4, A_COMMENT + 3),
+                firstPage.getComments().stream().map(Comment::getCommentText).toList());
+        assertTrue(firstPage.isMoreComments());
+        assertEquals(5, firstPage.getCommentCount());
+
+        Book lastPage = bookRepository.findCommentsForBook(savedBook.getId(), PageRequest.of(2, 2)).orElseThrow();
+        assertEquals(List.of(A_COMMENT + 0), lastPage.getComments().stream().map(Comment::getCommentText).toList());
+        assertFalse(lastPage.isMoreComments());
+
+        assertTrue(bookRepository.findCommentsForBook("notABookId", PageRequest.of(0, 2)).isEmpty());
+    }
+
+    @Test
+    void deleteBookAndCommentsRemovesComments() {
+        Book savedBook = bookRepository.insert(BookTestUtils.createTestBook());
+        Book comments = bookRepository.addCommentToBook(savedBook.getId(), new Comment(A_COMMENT, new Owner()));
+        String commentId = comments.getComments().getFirst().getId();
+
+        bookRepository.deleteBookAndComments(savedBook.getId());
+
+        assertTrue(bookRepository.findById(savedBook.getId()).isEmpty());
+        assertTrue(bookRepository.findCommentForBook(savedBook.getId(), commentId).isEmpty());
+    }
+
+    @Test
+    void moveEmbeddedCommentsToCommentCollection() {
+        Book savedBook = bookRepository.insert(BookTestUtils.createTestBook());
+        Comment comment = new Comment(A_COMMENT, new Owner(BookTestUtils.getEditorTestUser()));
+        Comment deletedComment = new Comment(ANOTHER_COMMENT, new Owner());
+        deletedComment.setDeleted(true);
+
+        // Store the comments as they used to be - embedded in the book
+        List<Document> embeddedComments = new ArrayList<>();
+        for (Comment c : List.of(comment, deletedComment)) {
+            Document embeddedComment = new Document();
+            mongoTemplate.getConverter().write(c, embeddedComment);
+            embeddedComments.add(embeddedComment);
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(savedBook.getId())),
+                new Update().set("comments", embeddedComments), Book.class);
+
+        assertTrue(bookRepository.moveEmbeddedCommentsToCommentCollection() >= 1);
+        assertEquals(0, bookRepository.moveEmbeddedCommentsToCommentCollection());
+
+        Book migrated = bookRepository.findBookWithCommentsById(savedBook.getId()).orElseThrow();
+        assertEquals(1, migrated.getCommentCount());
+        assertEquals(2, migrated.getComments().size());
+        assertEquals(comment.getOwner().getFullName(),
+                bookRepository.findCommentForBook(savedBook.getId(), comment.getId()).orElseThrow().getOwner().getFullName());
+        Document migratedBook = mongoTemplate.query(Book.class).as(Document.class)
+                .matching(new Query(Criteria.where("id").is(savedBook.getId()))).oneValue();
+        assertNotNull(migratedBook);
+        assertFalse(migratedBook.containsKey("comments"));
+    }
+
+    @Test
+    void findBookVersionReflectsComments() {
+        Book savedBook = bookRepository.insert(BookTestUtils.createTestBook());
+
+        BookVersion version = bookRepository.findBookVersion(savedBook.getId()).orElseThrow();
+        assertEquals(savedBook.getId(), version.getId());
+        assertNotNull(version.getLastModifiedDateTime());
+        assertEquals(0, version.getCommentCount());
+        assertEquals(version.getLastModifiedDateTime(), version.getLastChangedDateTime());
+
+        Book comments = bookRepository.addCommentToBook(savedBook.getId(), new Comment(A_COMMENT, new Owner()));
+        version = bookRepository.findBookVersion(savedBook.getId()).orElseThrow();
+        assertEquals(1, version.getCommentCount());
+        LocalDateTime commentAdded = version.getCommentsLastModifiedDateTime();
+        assertNotNull(commentAdded);
+
+        bookRepository.removeCommentFromBook(savedBook.getId(), comments.getComments().getFirst().getId(), COMMENT_REMOVER);
+
+        version = bookRepository.findBookVersion(savedBook.getId()).orElseThrow();
+        assertEquals(0, version.getCommentCount());
+        assertFalse(version.getCommentsLastModifiedDateTime().isBefore(commentAdded));
+        assertEquals(version.getCommentsLastModifiedDateTime(), version.getLastChangedDateTime());
+
+        assertTrue(bookRepository.findBookVersion("notABookId").isEmpty());
+    }
+
+    @Test
+    void updateReviewFieldsOnlyChangesReviewFieldsOfOwnedBooks() {
+        User editor = BookTestUtils.getEditorTestUser();
+        Book book = BookTestUtils.createTestBook();
+        book.setCreatedBy(new Owner(editor));
+        book.setGoogleBookDetails(new Item());
+        Book savedBook = bookRepository.insert(book);
+        bookRepository.addCommentToBook(savedBook.getId(), new Comment(A_COMMENT, new Owner(editor)));
+
+        final String updatedTitle = "An updated title";
+        Book review = Book.builder().id(savedBook.getId()).title(updatedTitle).author(savedBook.getAuthor()).
+                genre("An updated genre").summary(savedBook.getSummary()).rating(Book.Rating.TERRIBLE).build();
+
+        // Another editor doesn't own the book so nothing is updated
+        assertTrue(bookRepository.updateReviewFields(review, BookTestUtils.getADifferentEditorTestUser(), NO_GOOGLE_BOOK_DETAILS).isEmpty());
+        assertEquals(savedBook.getTitle(), bookRepository.findById(savedBook.getId()).orElseThrow().getTitle());
+
+        UpdatedBook updatedBook = bookRepository.updateReviewFields(review, editor, NO_GOOGLE_BOOK_DETAILS).orElseThrow();
+        assertEquals(BookFacets.of(savedBook), updatedBook.facetsBeforeUpdate());
+        assertEquals(savedBook.getGoogleBookId(), updatedBook.googleBookIdBeforeUpdate());
+        assertEquals(updatedTitle, updatedBook.book().getTitle());
+
+        // The comment is kept. The Google Books data is removed as the review no longer has a Google book id
+        Book storedBook = bookRepository.findBookWithCommentsById(savedBook.getId()).orElseThrow();
+        assertEquals(updatedTitle, storedBook.getTitle());
+        assertEquals(Book.Rating.TERRIBLE, storedBook.getRating());
+        assertEquals(1, storedBook.getCommentCount());
+        assertEquals(1, storedBook.getComments().size());
+        assertNull(storedBook.getGoogleBookDetails());
+        assertEquals(editor.getFullName(), storedBook.getLastModifiedBy().getFullName());
+        assertEquals(savedBook.getCreatedBy().getFullName(), storedBook.getCreatedBy().getFullName());
+
+        // Admins can update books they don't own
+        review.setTitle(BookTestUtils.J_UNIT_TESTING_FOR_BEGINNERS);
+        assertTrue(bookRepository.updateReviewFields(review, BookTestUtils.getTestUser(), NO_GOOGLE_BOOK_DETAILS).isPresent());
+        assertTrue(bookRepository.updateReviewFields(Book.builder().id("notABookId").build(),
+                BookTestUtils.getTestUser(), NO_GOOGLE_BOOK_DETAILS).isEmpty());
+    }
+
+    @Test
+    void updateReviewFieldsRemovesDetailsOfPreviousGoogleBookId() {
+        User editor = BookTestUtils.getEditorTestUser();
+        Item details = new Item();
+        details.setId(GOOGLE_BOOK_ID);
+        Book book = BookTestUtils.createTestBook();
+        book.setCreatedBy(new Owner(editor));
+        book.setGoogleBookId(GOOGLE_BOOK_ID);
+        book.setGoogleBookDetails(details);
+        Book savedBook = bookRepository.insert(book);
+
+        // The Google book id hasn't changed so its details are kept
+        Book review = Book.builder().id(savedBook.getId()).title("A changed title").author(savedBook.getAuthor()).
+                genre(savedBook.getGenre()).summary(savedBook.getSummary()).rating(savedBook.getRating()).
+                googleBookId(GOOGLE_BOOK_ID).build();
+        bookRepository.updateReviewFields(review, editor, NO_GOOGLE_BOOK_DETAILS);
+        Book storedBook = bookRepository.findById(savedBook.getId()).orElseThrow();
+        assertEquals("A changed title", storedBook.getTitle());
+        assertEquals(GOOGLE_BOOK_ID, storedBook.getGoogleBookDetails().getId());
+
+        // The Google book id has changed but no details for it were supplied
+        review.setGoogleBookId("AChangedGoogleBookId");
+        UpdatedBook updatedBook = bookRepository.updateReviewFields(review, editor, NO_GOOGLE_BOOK_DETAILS).orElseThrow();
+        assertEquals(GOOGLE_BOOK_ID, updatedBook.googleBookIdBeforeUpdate());
+        storedBook = bookRepository.findById(savedBook.getId()).orElseThrow();
+        assertEquals("AChangedGoogleBookId", storedBook.getGoogleBookId());
+        assertNull(storedBook.getGoogleBookDetails());
+    }
+
+    @Test
+    void updateReviewFieldsSetsDetailsOfChangedGoogleBookId() {
+        User editor = BookTestUtils.getEditorTestUser();
+        Book book = BookTestUtils.createTestBook();
+        book.setCreatedBy(new Owner(editor));
+        book.setGoogleBookId(GOOGLE_BOOK_ID);
+        book.setGoogleBookDetails(new Item());
+        Book savedBook = bookRepository.insert(book);
+
+        final String changedGoogleBookId = "AChangedGoogleBookId";
+        Item changedDetails = new Item();
+        changedDetails.setId(changedGoogleBookId);
+        Book review = Book.builder().id(savedBook.getId()).title(savedBook.getTitle()).author(savedBook.getAuthor()).
+                genre(savedBook.getGenre()).summary(savedBook.getSummary()).rating(savedBook.getRating()).
+                googleBookId(changedGoogleBookId).build();
+
+        UpdatedBook updatedBook = bookRepository.updateReviewFields(review, editor, changedDetails).orElseThrow();
+        assertEquals(GOOGLE_BOOK_ID, updatedBook.googleBookIdBeforeUpdate());
+        assertEquals(changedGoogleBookId, updatedBook.book().getGoogleBookDetails().getId());
+
+        Book storedBook = bookRepository.findById(savedBook.getId()).orElseThrow();
+        assertEquals(changedGoogleBookId, storedBook.getGoogleBookId());
+        assertEquals(changedGoogleBookId, storedBook.getGoogleBookDetails().getId());
+    }
+
+    @Test
+    void findVisibleBookByIdExcludesFieldsUserCannotSee() {
+        User editor = BookTestUtils.getEditorTestUser();
+        Book book = BookTestUtils.createTestBook();
+        book.setCreatedBy(new Owner(editor));
+        Book savedBook = bookRepository.insert(book);
+        bookRepository.addCommentToBook(savedBook.getId(), new Comment(A_COMMENT, new Owner(editor)));
+
+        Query query = BookFieldVisibility.ANONYMOUS.applyTo(new Query(Criteria.where("id").is(savedBook.getId())));
+        Document anonymousView = mongoTemplate.query(Book.class).as(Document.class).matching(query).oneValue();
+        assertNotNull(anonymousView);
+        assertFalse(anonymousView.get("createdBy", Document.class).containsKey("email"));
+        assertFalse(anonymousView.get("createdBy", Document.class).containsKey("fullName"));
+
+        Query commentQuery = BookFieldVisibility.ANONYMOUS.applyToComments(
+                new Query(Criteria.where("bookId").is(savedBook.getId())));
+        Document anonymousCommentView = mongoTemplate.query(Comment.class).as(Document.class).matching(commentQuery).oneValue();
+        assertNotNull(anonymousCommentView);
+        assertFalse(anonymousCommentView.get("owner", Document.class).containsKey("email"));
+        assertFalse(anonymousCommentView.containsKey("deletedBy"));
+
+        Query editorQuery = BookFieldVisibility.EDITOR.applyTo(new Query(Criteria.where("id").is(savedBook.getId())));
+        Document editorView = mongoTemplate.query(Book.class).as(Document.class).matching(editorQuery).oneValue();
+        assertNotNull(editorView);
+        assertFalse(editorView.get("createdBy", Document.class).containsKey("email"));
+        assertTrue(editorView.get("createdBy", Document.class).containsKey("fullName"));
+
+        // Editors still get told which books and comments they own - but not the owner ids
+        Book editorsBook = bookRepository.findVisibleBookById(savedBook.getId(), editor).orElseThrow();
+        assertTrue(editorsBook.isAllowUpdate());
+        assertTrue(editorsBook.getComments().getFirst().isAllowDelete());
+        assertEquals("", editorsBook.getCreatedBy().getAuthenticationServiceId());
+        assertEquals(editor.getFullName(), editorsBook.getCreatedBy().getFullName());
+
+        Book anonymousBook = bookRepository.findVisibleBookById(savedBook.getId(), null).orElseThrow();
+        assertFalse(anonymousBook.isAllowUpdate());
+        assertEquals("", anonymousBook.getCreatedBy().getFullName());
     }
 
     @Test
@@ -12,7 +12,9 @@ import org.springframework.context.annotation.Profile;
 import org.wiremock.spring.ConfigureWireMock;
 import org.wiremock.spring.EnableWireMock;
 
-import static org.junit.jupiter.api.Assertions.assertNull;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 @Profile({"dev-mongo-java-server", "dev-mongo-java-server-no-auth", "dev-mongodb-no-auth", "dev-mongodb", "ci"})
 @EnableWireMock({
@@ -24,6 +26,7 @@ class GoogleBookDaoAsyncTest extends IntegrationTest {
     private static final Logger LOGGER = LoggerFactory.getLogger(GoogleBookDaoAsyncTest.class);
 
     private static final String SPRING_FRAMEWORK_GOOGLE_BOOK_ID = "oMVIzzKjJCcC";
+    private static final String NO_SUCH_BOOK_ID = "5a6cc4b1e4b0ce51a1f07b00";
 
     @Autowired
     private BookRepository bookRepository;
@@ -43,10 +46,20 @@ class GoogleBookDaoAsyncTest extends IntegrationTest {
         assertNull(savedBook.getGoogleBookDetails());
 
         // This will result in a call to the Google Books API being mocked by WireMock
-        async.updateBookWithGoogleBookDetails(savedBook, SPRING_FRAMEWORK_GOOGLE_BOOK_ID);
+        Boolean updated = async.updateBookWithGoogleBookDetails(savedBook.getId(), SPRING_FRAMEWORK_GOOGLE_BOOK_ID).
+                block(Duration.ofSeconds(10));
+        assertEquals(Boolean.TRUE, updated);
+
+        Book updatedBook = bookRepository.findById(savedBook.getId()).orElseThrow(() -> new IllegalStateException("Expected book not found"));
+        assertNotNull(updatedBook.getGoogleBookDetails());
+        assertEquals(SPRING_FRAMEWORK_GOOGLE_BOOK_ID, updatedBook.getGoogleBookDetails().getId());
+    }
 
-        // TODO - fix such that following call will only take place after async update has completed.
-        bookRepository.findById(savedBook.getId()).orElseThrow(() -> new IllegalStateException("Expected book not found"));
+    @Test
+    void testUnknownBookNotUpdated() {
+        Boolean updated = async.updateBookWithGoogleBookDetails(NO_SUCH_BOOK_ID, SPRING_FRAMEWORK_GOOGLE_BOOK_ID).
+                block(Duration.ofSeconds(10));
+        assertEquals(Boolean.FALSE, updated);
     }
 
 }
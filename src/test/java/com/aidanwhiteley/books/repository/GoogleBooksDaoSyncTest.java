@@ -5,7 +5,9 @@ import ch.qos.logback.classic.LoggerContext;
 import com.aidanwhiteley.books.domain.googlebooks.BookSearchResult;
 import com.aidanwhiteley.books.domain.googlebooks.Item;
 import com.aidanwhiteley.books.util.IntegrationTest;
-import org.junit.jupiter.api.Disabled;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +41,9 @@ class GoogleBooksDaoSyncTest extends IntegrationTest {
     @Autowired
     private GoogleBooksDaoSync theDao;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void findByTitleAndAuthor() {
         BookSearchResult result = theDao.searchGoogleBooksByTitleAndAuthor("Design Patterns", "Gamma");
@@ -65,7 +70,21 @@ class GoogleBooksDaoSyncTest extends IntegrationTest {
     }
 
     @Test
-    @Disabled("Disabled as RestTemplateBuilder based timeouts removed to aid SB4 boot upgrade")
+    void findByGoogleBookIdRecordsMetrics() {
+        theDao.searchGoogleBooksByGoogleBookId(SPRING_FRAMEWORK_GOOGLE_BOOK_ID);
+
+        Timer timer = meterRegistry.find("books.google.books.api.requests")
+                .tags("operation", "getByGoogleBookId", "status", "200").timer();
+        assertNotNull(timer);
+        assertTrue(timer.count() > 0);
+
+        DistributionSummary responseSize = meterRegistry.find("books.google.books.api.response.size")
+                .tags("operation", "getByGoogleBookId").summary();
+        assertNotNull(responseSize);
+        assertTrue(responseSize.totalAmount() > 0);
+    }
+
+    @Test
     void confirmFindbyBookTimesOut() {
 
         // Turn off unwanted logging for read timeout. Prevents JUnit output having unnecessary stack traces etc.
@@ -0,0 +1,70 @@
+package com.aidanwhiteley.books.service;
+
+import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.repository.BookRepository;
+import com.aidanwhiteley.books.repository.dtos.BookFacetCount;
+import com.aidanwhiteley.books.service.dtos.FacetCountDrift;
+import com.aidanwhiteley.books.util.BookTestUtils;
+import com.aidanwhiteley.books.util.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookFacetCountsReconciliationServiceTest extends IntegrationTest {
+
+    private static final String DRIFTED_GENRE = "Genre with a drifted count";
+    private static final String GENRE_WITH_NO_BOOKS = "Genre with no books";
+
+    @Autowired
+    private BookFacetCountsReconciliationService reconciliationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void booksSavedAndDeletedThroughTheRepositoryDontDrift() {
+        assertTrue(reconciliationService.reconcile().isEmpty(), "Expected no drift from the other tests' books");
+
+        Book book = BookTestUtils.createTestBook();
+        book.setGenre(DRIFTED_GENRE);
+        Book savedBook = bookRepository.insert(book);
+        bookRepository.deleteById(savedBook.getId());
+
+        assertTrue(reconciliationService.reconcile().isEmpty());
+    }
+
+    @Test
+    void reconcileReportsAndCorrectsDrift() {
+        Book book = BookTestUtils.createTestBook();
+        book.setGenre(DRIFTED_GENRE);
+        bookRepository.insert(book);
+
+        // Simulate counts changed outside the application
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(
+                        BookFacetCount.idFor(BookFacetCount.Facet.GENRE, DRIFTED_GENRE))),
+                new Update().set("countOfBooks", 5), BookFacetCount.class);
+        mongoTemplate.save(new BookFacetCount(BookFacetCount.Facet.GENRE, GENRE_WITH_NO_BOOKS, 1));
+
+        List<FacetCountDrift> drifts = reconciliationService.reconcile();
+        assertTrue(drifts.stream().anyMatch(d -> d.facet() == BookFacetCount.Facet.GENRE &&
+                DRIFTED_GENRE.equals(d.value()) && d.storedCount() == 5 && d.actualCount() == 1));
+        assertTrue(drifts.stream().anyMatch(d -> d.facet() == BookFacetCount.Facet.GENRE &&
+                GENRE_WITH_NO_BOOKS.equals(d.value()) && d.storedCount() == 1 && d.actualCount() == 0));
+
+        assertTrue(bookRepository.countBooksByGenre().stream()
+                .anyMatch(g -> DRIFTED_GENRE.equals(g.getGenre()) && g.getCountOfBooks() == 1));
+        assertTrue(bookRepository.countBooksByGenre().stream().noneMatch(g -> GENRE_WITH_NO_BOOKS.equals(g.getGenre())));
+
+        assertTrue(reconciliationService.reconcile().isEmpty(), "Expected no drift immediately after reconciling");
+    }
+}
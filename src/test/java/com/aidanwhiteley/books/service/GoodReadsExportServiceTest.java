@@ -2,11 +2,16 @@ package com.aidanwhiteley.books.service;
 
 import com.aidanwhiteley.books.domain.User;
 import com.aidanwhiteley.books.repository.BookRepository;
+import com.aidanwhiteley.books.util.GoodReadsBookExport;
 import com.aidanwhiteley.books.util.IntegrationTest;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GoodReadsExportServiceTest extends IntegrationTest {
 
@@ -17,14 +22,32 @@ class GoodReadsExportServiceTest extends IntegrationTest {
     private BookRepository bookRepository;
 
     @Test
-    void testGoodReadsExportHasExpectedRows()  {
+    void testGoodReadsExportHasExpectedRows() throws IOException {
         User user = new User();
         user.setAuthenticationServiceId("107641352409228521888");
         user.setAuthProvider(User.AuthenticationProvider.GOOGLE);
-       var output = goodReadsExportService.getExportInGoodReadsFormat(user);
+        var writer = new StringWriter();
+        long booksExported = goodReadsExportService.writeExportInGoodReadsFormat(user, writer);
+
+        final int headerRows = 1;
+        final long rowsInDataBase = bookRepository.findAll().stream().filter(s -> s.isOwner(user)).count();
+        assertTrue(rowsInDataBase > 0);
+        assertEquals(rowsInDataBase, booksExported);
+
+        var output = writer.toString().split("\r\n");
+        assertEquals(headerRows + rowsInDataBase, output.length);
+        assertEquals(GoodReadsBookExport.goodReadsExportHeaderRow(), output[0]);
+    }
+
+    @Test
+    void testAdminExportsAllBooks() throws IOException {
+        User admin = new User();
+        admin.setAuthenticationServiceId("an-admin-user");
+        admin.setAuthProvider(User.AuthenticationProvider.GOOGLE);
+        admin.addRole(User.Role.ROLE_ADMIN);
+
+        long booksExported = goodReadsExportService.writeExportInGoodReadsFormat(admin, new StringWriter());
 
-       final int headerRows = 1;
-       final long rowsInDataBase = bookRepository.findAll().stream().filter(s -> s.isOwner(user)).count();
-       assertEquals(headerRows + rowsInDataBase, output.size());
+        assertEquals(bookRepository.count(), booksExported);
     }
 }
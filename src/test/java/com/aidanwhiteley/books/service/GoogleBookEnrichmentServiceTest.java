@@ -0,0 +1,89 @@
+package com.aidanwhiteley.books.service;
+
+import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.repository.BookRepository;
+import com.aidanwhiteley.books.repository.dtos.GoogleBookEnrichmentJob;
+import com.aidanwhiteley.books.util.BookTestUtils;
+import com.aidanwhiteley.books.util.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.wiremock.spring.ConfigureWireMock;
+import org.wiremock.spring.EnableWireMock;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Profile({"dev-mongo-java-server", "dev-mongo-java-server-no-auth", "dev-mongodb-no-auth", "dev-mongodb", "ci"})
+@EnableWireMock({
+        @ConfigureWireMock(
+                port = 0)
+})
+@TestPropertySource(properties = "books.google.books.enrichment.maxAttempts=1")
+class GoogleBookEnrichmentServiceTest extends IntegrationTest {
+
+    // Stubbed by c.a.b.r.GoogleBookDaoAsyncTest.testBookUpdatedWithGoogleBookDetails.json
+    private static final String SPRING_FRAMEWORK_GOOGLE_BOOK_ID = "oMVIzzKjJCcC";
+    private static final String NOT_STUBBED_GOOGLE_BOOK_ID = "notAGoogleBookId";
+    private static final int MAX_POLLS = 50;
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    @Autowired
+    private GoogleBookEnrichmentService googleBookEnrichmentService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void testOneJobUpdatesAllBooksForTheSameGoogleBook() throws InterruptedException {
+
+        Book book1 = bookRepository.insert(BookTestUtils.createTestBook());
+        Book book2 = bookRepository.insert(BookTestUtils.createTestBook());
+
+        googleBookEnrichmentService.requestGoogleBookDetails(book1.getId(), SPRING_FRAMEWORK_GOOGLE_BOOK_ID);
+        googleBookEnrichmentService.requestGoogleBookDetails(book2.getId(), SPRING_FRAMEWORK_GOOGLE_BOOK_ID);
+
+        assertTrue(waitFor(() -> hasGoogleBookDetails(book1) && hasGoogleBookDetails(book2)));
+        assertTrue(waitFor(() -> mongoTemplate.findById(SPRING_FRAMEWORK_GOOGLE_BOOK_ID, GoogleBookEnrichmentJob.class) == null));
+    }
+
+    @Test
+    void testFailingJobIsLeftDeadAndCanBeRetried() throws InterruptedException {
+
+        Book book = bookRepository.insert(BookTestUtils.createTestBook());
+
+        googleBookEnrichmentService.requestGoogleBookDetails(book.getId(), NOT_STUBBED_GOOGLE_BOOK_ID);
+
+        assertTrue(waitFor(() -> googleBookEnrichmentService.getDeadJobs().stream().
+                anyMatch(job -> job.getId().equals(NOT_STUBBED_GOOGLE_BOOK_ID))));
+        GoogleBookEnrichmentJob deadJob = mongoTemplate.findById(NOT_STUBBED_GOOGLE_BOOK_ID, GoogleBookEnrichmentJob.class);
+        assertNotNull(deadJob);
+        assertEquals(1, deadJob.getAttempts());
+        assertNotNull(deadJob.getLastError());
+        assertTrue(deadJob.getBookIds().contains(book.getId()));
+        assertFalse(hasGoogleBookDetails(book));
+
+        assertTrue(googleBookEnrichmentService.retryDeadJob(NOT_STUBBED_GOOGLE_BOOK_ID));
+        assertFalse(googleBookEnrichmentService.retryDeadJob(SPRING_FRAMEWORK_GOOGLE_BOOK_ID));
+    }
+
+    private boolean hasGoogleBookDetails(Book book) {
+        return bookRepository.findById(book.getId()).orElseThrow().getGoogleBookDetails() != null;
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < MAX_POLLS; i++) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+        return condition.getAsBoolean();
+    }
+}
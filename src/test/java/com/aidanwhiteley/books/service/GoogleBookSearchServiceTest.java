@@ -5,9 +5,11 @@ import ch.qos.logback.classic.LoggerContext;
 import com.aidanwhiteley.books.domain.Book;
 import com.aidanwhiteley.books.domain.googlebooks.Item;
 import com.aidanwhiteley.books.repository.BookRepository;
+import com.aidanwhiteley.books.repository.GoogleBookSearchRepository;
 import com.aidanwhiteley.books.service.dtos.GoogleBookSearchResult;
 import com.aidanwhiteley.books.util.BookTestUtils;
 import com.aidanwhiteley.books.util.IntegrationTest;
+import com.github.tomakehurst.wiremock.client.WireMock;
 import org.junit.jupiter.api.Test;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +18,14 @@ import org.springframework.test.context.ActiveProfiles;
 import org.wiremock.spring.ConfigureWireMock;
 import org.wiremock.spring.EnableWireMock;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 @Profile({"dev-mongo-java-server", "dev-mongo-java-server-no-auth", "dev-mongodb-no-auth", "dev-mongodb", "ci"})
@@ -33,6 +43,9 @@ class GoogleBookSearchServiceTest extends IntegrationTest {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private GoogleBookSearchRepository googleBookSearchRepository;
+
     @Test
     void testGetGoogleBookDataNotInCache() {
         LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
@@ -83,4 +96,54 @@ class GoogleBookSearchServiceTest extends IntegrationTest {
         context.getLogger(GoogleBookSearchService.class).setLevel(Level.valueOf("WARN"));
     }
 
+    @Test
+    void testUpdateBookWithGoogleDataLeavesCachedItemUnchanged() {
+        Item cachedItem = googleBookSearchService.getGoogleBooks("Design Patterns", "Gamma", 0).getItem();
+        String description = cachedItem.getVolumeInfo().getDescription();
+
+        Book aBook = bookRepository.insert(BookTestUtils.createTestBook());
+        googleBookSearchService.updateBookWithGoogleBookDetails(aBook, "Design Patterns", "Gamma", 0);
+
+        // The description was sanitised when the search was cached rather than in the shared cached item
+        Item itemAfterUpdate = googleBookSearchService.getGoogleBooks("Design Patterns", "Gamma", 0).getItem();
+        assertEquals(description, itemAfterUpdate.getVolumeInfo().getDescription());
+        assertEquals(description, bookRepository.findById(aBook.getId()).orElseThrow().getGoogleBookDetails()
+                .getVolumeInfo().getDescription());
+    }
+
+    @Test
+    void testPagingThroughResultsUsesInHeapCache() {
+        var result = googleBookSearchService.getGoogleBooks("Ask An Astronaut", "Tim Peake", 0);
+        assertNotNull(result.getItem());
+
+        // Once the Mongo copy has gone, only the in heap copy can be providing the results
+        googleBookSearchRepository.deleteAll(googleBookSearchRepository.findAllByTitleAndAuthor("Ask An Astronaut", "Tim Peake"));
+
+        var nextResult = googleBookSearchService.getGoogleBooks(" ask an  ASTRONAUT ", "tim peake", 1);
+        assertTrue(nextResult.isFromCache());
+        assertNotNull(nextResult.getItem());
+        assertTrue(nextResult.isHasPrevious());
+    }
+
+    @Test
+    void testConcurrentSearchesShareOneApiCall() throws Exception {
+        final int concurrentSearches = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentSearches);
+        try {
+            List<Future<GoogleBookSearchResult>> results = new ArrayList<>();
+            for (int i = 0; i < concurrentSearches; i++) {
+                results.add(executor.submit(() -> googleBookSearchService.getGoogleBooks("Coalesced Search", "Some Author", 0)));
+            }
+            for (Future<GoogleBookSearchResult> result : results) {
+                assertNotNull(result.get(10, TimeUnit.SECONDS).getItem());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/books/v1/volumes")).
+                withQueryParam("q", equalTo(" intitle:Coalesced Search inauthor:Some Author")));
+        assertEquals(1, googleBookSearchRepository.findAllByTitleAndAuthor("Coalesced Search", "Some Author").size());
+    }
+
 }
@@ -2,19 +2,29 @@ package com.aidanwhiteley.books.util;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
+import com.aidanwhiteley.books.controller.dtos.ClientRoles;
 import com.aidanwhiteley.books.controller.jwt.JwtAuthentication;
 import com.aidanwhiteley.books.controller.jwt.JwtUtils;
 import com.aidanwhiteley.books.domain.User;
+import com.aidanwhiteley.books.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.security.Principal;
 import java.util.Optional;
+import java.util.UUID;
 
+import static com.aidanwhiteley.books.util.CacheConfig.RESOLVED_USERS_CACHE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class JwtAuthenticationUtilsTest extends IntegrationTest {
 
@@ -24,6 +34,15 @@ class JwtAuthenticationUtilsTest extends IntegrationTest {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void tryToGetActuatorJwtToken() {
         String jwt = jwtAuthenticationUtils.getJwtForActuatorRoleUser();
@@ -47,6 +66,39 @@ class JwtAuthenticationUtilsTest extends IntegrationTest {
         context.getLogger(JwtAuthenticationUtils.class).setLevel(Level.valueOf("WARN"));
     }
 
+    @Test
+    void resolvedUsersAreCachedUntilUsersChange() {
+        User user = BookTestUtils.getEditorTestUser();
+        user.setAuthenticationServiceId(UUID.randomUUID().toString());
+        user = userRepository.insert(user);
+        Principal principal = new JwtAuthentication(user);
+        double hitsBefore = cacheGets("hit");
+
+        User resolvedUser = jwtAuthenticationUtils.extractUserFromPrincipal(principal, false).orElseThrow();
+        assertEquals(user.getFullName(), resolvedUser.getFullName());
+
+        // Changes made by the caller and changes that bypass the repository aren't seen while the user is cached
+        resolvedUser.setFullName("Changed by caller");
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(user.getId())),
+                new Update().set("fullName", "Changed in Mongo"), User.class);
+        assertEquals(user.getFullName(),
+                jwtAuthenticationUtils.extractUserFromPrincipal(principal, false).orElseThrow().getFullName());
+        assertTrue(cacheGets("hit") > hitsBefore);
+
+        userRepository.updateUserRoles(new ClientRoles(user.getId(), true, true));
+        User updatedUser = jwtAuthenticationUtils.extractUserFromPrincipal(principal, false).orElseThrow();
+        assertEquals("Changed in Mongo", updatedUser.getFullName());
+        assertTrue(updatedUser.getRoles().contains(User.Role.ROLE_ADMIN));
+
+        userRepository.deleteById(user.getId());
+        assertFalse(jwtAuthenticationUtils.extractUserFromPrincipal(principal, false).isPresent());
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", RESOLVED_USERS_CACHE).tag("result", result).
+                functionCounter().count();
+    }
+
     @Test
     void throwExceptionForUnexpectedAuth() {
         final var auth = new JwtAuthentication("d\tummy", "d\rummy", "d\nummy");
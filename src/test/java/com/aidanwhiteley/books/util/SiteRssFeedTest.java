@@ -1,5 +1,6 @@
 package com.aidanwhiteley.books.util;
 
+import com.aidanwhiteley.books.util.SiteRssFeed.RenderedSiteRssFeed;
 import com.rometools.rome.feed.rss.Channel;
 import com.rometools.rome.feed.rss.Item;
 import org.junit.jupiter.api.Test;
@@ -29,4 +30,16 @@ class SiteRssFeedTest extends IntegrationTest {
         assertFalse(item.getContent().getValue().isEmpty());
     }
 
+    @Test
+    void checkRenderedFeedIsReusedUntilBooksChange() {
+        RenderedSiteRssFeed feed = siteFeed.getRenderedSiteRssFeed();
+        assertSame(feed, siteFeed.getRenderedSiteRssFeed());
+
+        siteFeed.booksChanged();
+        RenderedSiteRssFeed reRenderedFeed = siteFeed.getRenderedSiteRssFeed();
+        assertNotSame(feed, reRenderedFeed);
+        assertNotEquals(feed.eTag(), reRenderedFeed.eTag());
+        assertTrue(reRenderedFeed.lastModified().isAfter(feed.lastModified()));
+    }
+
 }
@@ -0,0 +1,107 @@
+package com.aidanwhiteley.books.util.preprod;
+
+import com.aidanwhiteley.books.domain.Book;
+import com.aidanwhiteley.books.domain.Comment;
+import com.aidanwhiteley.books.domain.User;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticDataGeneratorTest {
+
+    private static final int NUMBER_OF_BOOKS = 5000;
+
+    private static MappingMongoConverter converter;
+
+    @BeforeAll
+    static void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+    }
+
+    @Test
+    void generatedDocumentsMapToTheDomainClasses() {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(1L, NUMBER_OF_BOOKS);
+
+        Document bookDocument = generator.createBook();
+        Book book = converter.read(Book.class, bookDocument);
+        assertNotNull(book.getTitle());
+        assertNotNull(book.getAuthor());
+        assertNotNull(book.getRating());
+        assertNotNull(book.getCreatedBy().getFullName());
+        assertNotNull(book.getCreatedDateTime());
+
+        User user = converter.read(User.class, generator.getUsers().getFirst());
+        assertTrue(user.getRoles().contains(User.Role.ROLE_EDITOR));
+        assertEquals(NUMBER_OF_BOOKS / 100, generator.getUsers().size());
+
+        List<Document> comments = new ArrayList<>();
+        while (comments.isEmpty()) {
+            bookDocument = generator.createBook();
+            comments = generator.createComments(bookDocument);
+        }
+        Comment comment = converter.read(Comment.class, comments.getFirst());
+        assertEquals(bookDocument.getObjectId("_id").toHexString(), comment.getBookId());
+        assertNotNull(comment.getCommentText());
+        assertEquals(converter.read(Book.class, bookDocument).getCommentCount(), comments.size());
+    }
+
+    @Test
+    void generatedBooksAreSkewedTowardsAFewGenresAndAuthors() {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(1L, NUMBER_OF_BOOKS);
+        List<Document> books = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_BOOKS; i++) {
+            books.add(generator.createBook());
+        }
+
+        List<Long> genreCounts = countsByField(books, "genre");
+        assertTrue(genreCounts.getFirst() > 3 * genreCounts.getLast());
+
+        List<Long> authorCounts = countsByField(books, "author");
+        assertTrue(authorCounts.getFirst() > 10 * authorCounts.get(authorCounts.size() / 2));
+
+        Map<String, Long> ratingCounts = books.stream()
+                .collect(Collectors.groupingBy(b -> b.getString("rating"), Collectors.counting()));
+        assertTrue(ratingCounts.get("GOOD") > ratingCounts.get("TERRIBLE"));
+        assertTrue(ratingCounts.get("GREAT") > ratingCounts.get("POOR"));
+    }
+
+    @Test
+    void sameSeedGeneratesTheSameData() {
+        SyntheticDataGenerator generator1 = new SyntheticDataGenerator(42L, NUMBER_OF_BOOKS);
+        SyntheticDataGenerator generator2 = new SyntheticDataGenerator(42L, NUMBER_OF_BOOKS);
+        assertEquals(generator1.getUsers(), generator2.getUsers());
+
+        // Ids and dates included - so the whole of each document is the same
+        for (int i = 0; i < 100; i++) {
+            Document book1 = generator1.createBook();
+            Document book2 = generator2.createBook();
+            assertEquals(book1, book2);
+            assertEquals(generator1.createComments(book1), generator2.createComments(book2));
+        }
+    }
+
+    private static List<Long> countsByField(List<Document> books, String field) {
+        return books.stream()
+                .collect(Collectors.groupingBy(b -> b.getString(field), Collectors.counting()))
+                .values().stream()
+                .sorted(Comparator.reverseOrder())
+                .toList();
+    }
+}